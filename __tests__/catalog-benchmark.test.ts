@@ -0,0 +1,139 @@
+import fetch from 'node-fetch';
+
+// Catalog endpoints are served by the Spring backend directly
+const BACKEND_URL = 'http://localhost:8080/api';
+const REQUESTS_PER_SIZE = 20;
+// Set CATALOG_BENCH_SEED=1 to add throwaway movies and measure at larger catalog sizes too
+const SEED_SIZES = process.env.CATALOG_BENCH_SEED ? [50, 200] : [];
+// Each seeded movie gets its own far-future day in one showroom, so its show times never overlap
+const SHOW_TIMES_PER_MOVIE = ['13:00:00', '16:00:00', '19:00:00'];
+// Run against a backend started with --rate-limit.enabled=false, so the limiter doesn't turn the
+// load into 429s and the run measures the catalog
+
+interface Result {
+  catalogSize: number;
+  queriesPerRequest: number;
+  cacheHitRate: number;
+  p50Millis: number;
+  p95Millis: number;
+}
+
+describe('Movie catalog loading', () => {
+  let backendUp = false;
+  const seededMovieIds: number[] = [];
+
+  const catalogMetrics = async () => {
+    const [catalog, cache] = await Promise.all([
+      fetch(`${BACKEND_URL}/metrics/catalog`).then(response => response.json()),
+      fetch(`${BACKEND_URL}/metrics/catalog-cache`).then(response => response.json()),
+    ]);
+    return { ...catalog, ...cache };
+  };
+
+  const percentile = (sorted: number[], p: number) =>
+    sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+
+  const measure = async (): Promise<Result> => {
+    const before = await catalogMetrics();
+    const timings: number[] = [];
+    let catalogSize = 0;
+    for (let i = 0; i < REQUESTS_PER_SIZE; i++) {
+      const start = process.hrtime.bigint();
+      const response = await fetch(`${BACKEND_URL}/movies`);
+      const movies = await response.json();
+      timings.push(Number(process.hrtime.bigint() - start) / 1e6);
+      catalogSize = movies.length;
+    }
+    const after = await catalogMetrics();
+    timings.sort((a, b) => a - b);
+    return {
+      catalogSize,
+      // Requests answered from the cached catalog cost no queries at all
+      queriesPerRequest: (after.catalogQueries - before.catalogQueries) / REQUESTS_PER_SIZE,
+      // Share of requests that didn't have to wait for the catalog to be loaded
+      cacheHitRate: 1 - (after.misses - before.misses) / REQUESTS_PER_SIZE,
+      p50Millis: Math.round(percentile(timings, 0.5) * 10) / 10,
+      p95Millis: Math.round(percentile(timings, 0.95) * 10) / 10,
+    };
+  };
+
+  // The catalog only carries show times for running movies, and loading them is the costly part
+  const seedShowTimes = async (movieId: number, showroomId: number, index: number) => {
+    const showDate = new Date(Date.UTC(2099, 0, 1 + index)).toISOString().slice(0, 10);
+    await fetch(`${BACKEND_URL}/showtimes/add`, {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify(SHOW_TIMES_PER_MOVIE.map(showTime => ({
+        movieId,
+        showroomId,
+        showDate,
+        showTime,
+        duration: 120,
+        price: 12.5,
+      })))
+    });
+  };
+
+  const seedMovies = async (count: number) => {
+    const showrooms = await (await fetch(`${BACKEND_URL}/showrooms`)).json();
+    for (let i = 0; i < count; i++) {
+      const response = await fetch(`${BACKEND_URL}/movies`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify({
+          title: `Catalog Benchmark ${seededMovieIds.length + 1}`,
+          category: 'Benchmark',
+          status: 'Currently Running',
+          mpaaRating: 'PG',
+        })
+      });
+      if (!response.ok) continue;
+      const movieId = (await response.json()).movieId;
+      seededMovieIds.push(movieId);
+      if (showrooms.length > 0) await seedShowTimes(movieId, showrooms[0].showroomId, seededMovieIds.length);
+    }
+  };
+
+  beforeAll(async () => {
+    try {
+      backendUp = (await fetch(`${BACKEND_URL}/metrics/catalog`)).ok;
+      const limits = backendUp ? await (await fetch(`${BACKEND_URL}/metrics/rate-limits`)).json() : null;
+      if (limits?.enabled) {
+        console.log('Rate limiting is on, skipping catalog benchmark');
+        backendUp = false;
+      }
+    } catch (error) {
+      console.error('Backend not reachable, skipping catalog benchmark:', error);
+    }
+  });
+
+  afterAll(async () => {
+    for (const movieId of seededMovieIds) {
+      // Deleting a movie only detaches its show times, so remove them first
+      const showTimes = await (await fetch(`${BACKEND_URL}/showtimes/movie/${movieId}`)).json();
+      for (const showTime of showTimes) {
+        await fetch(`${BACKEND_URL}/showtimes/delete/${showTime.showTimeId}`, { method: 'DELETE' });
+      }
+      await fetch(`${BACKEND_URL}/movies/${movieId}`, { method: 'DELETE' });
+    }
+  });
+
+  test('GET /api/movies is served from the cache whatever the catalog size', async () => {
+    if (!backendUp) {
+      console.log('Backend not available, skipping catalog benchmark');
+      return;
+    }
+
+    const results: Result[] = [await measure()];
+    for (const size of SEED_SIZES) {
+      await seedMovies(size - seededMovieIds.length);
+      results.push(await measure());
+    }
+    console.table(results);
+
+    for (const result of results) {
+      expect(result.queriesPerRequest).toBeLessThanOrEqual(2);
+      expect(result.cacheHitRate).toBeGreaterThan(0.5);
+    }
+  }, 120000);
+});
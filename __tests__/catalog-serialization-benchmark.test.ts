@@ -0,0 +1,94 @@
+import fetch from 'node-fetch';
+
+// Catalog endpoints are served by the Spring backend directly
+const BACKEND_URL = 'http://localhost:8080/api';
+const WARMUP_REQUESTS = 5;
+const MEASURED_REQUESTS = 200;
+// Asking for every field sends the same movies through Jackson on each request, as GET /api/movies used to
+const ALL_FIELDS = 'movieId,title,category,cast,director,producer,synopsis,reviews,trailer_picture,' +
+  'trailer_video,mpaaRating,status,showTimes,upcomingShowTimes';
+// Run against a backend started with --rate-limit.enabled=false, so the limiter doesn't turn the
+// load into 429s and the run measures serialization
+
+interface Result {
+  path: string;
+  responseBytes: number;
+  p50Millis: number;
+  p99Millis: number;
+}
+
+describe('Pre-serialized catalog', () => {
+  let backendUp = false;
+
+  const bytesMetrics = async () => (await fetch(`${BACKEND_URL}/metrics/catalog-bytes`)).json();
+
+  const percentile = (sorted: number[], p: number) =>
+    sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+
+  const measure = async (path: string, url: string, acceptEncoding: string): Promise<Result> => {
+    const timings: number[] = [];
+    let responseBytes = 0;
+    for (let i = 0; i < WARMUP_REQUESTS + MEASURED_REQUESTS; i++) {
+      const start = process.hrtime.bigint();
+      // compress: false keeps node-fetch from inflating, so we time and count what was sent
+      const response = await fetch(url, { headers: { 'Accept-Encoding': acceptEncoding }, compress: false });
+      const body = await response.arrayBuffer();
+      if (i >= WARMUP_REQUESTS) {
+        timings.push(Number(process.hrtime.bigint() - start) / 1e6);
+      }
+      responseBytes = body.byteLength;
+    }
+    timings.sort((a, b) => a - b);
+    return {
+      path,
+      responseBytes,
+      p50Millis: Math.round(percentile(timings, 0.5) * 100) / 100,
+      p99Millis: Math.round(percentile(timings, 0.99) * 100) / 100,
+    };
+  };
+
+  beforeAll(async () => {
+    try {
+      backendUp = (await fetch(`${BACKEND_URL}/metrics/catalog-bytes`)).ok;
+      const limits = backendUp ? await (await fetch(`${BACKEND_URL}/metrics/rate-limits`)).json() : null;
+      if (limits?.enabled) {
+        console.log('Rate limiting is on, skipping serialization benchmark');
+        backendUp = false;
+      }
+    } catch (error) {
+      console.error('Backend not reachable, skipping serialization benchmark:', error);
+    }
+  });
+
+  test('GET /api/movies is rendered once per catalog version, not per request', async () => {
+    if (!backendUp) {
+      console.log('Backend not available, skipping serialization benchmark');
+      return;
+    }
+
+    const before = await bytesMetrics();
+    const results = [
+      await measure('pre-serialized', `${BACKEND_URL}/movies`, 'identity'),
+      await measure('pre-serialized gzip', `${BACKEND_URL}/movies`, 'gzip'),
+      await measure('Jackson per request', `${BACKEND_URL}/movies?fields=${ALL_FIELDS}`, 'identity'),
+    ];
+    const after = await bytesMetrics();
+    console.table(results);
+
+    const served = after.serves - before.serves;
+    const rendered = after.renders - before.renders;
+    // The old path allocated a full rendering on every request; now only re-renders allocate it
+    console.table([{
+      jacksonAllocatedBytesPerRequest: after.lastRenderAllocatedBytes,
+      preSerializedRenders: rendered,
+      preSerializedRequests: served,
+      allocatedBytesPerRequestNow: served === 0 ? 0 : Math.round(after.lastRenderAllocatedBytes * rendered / served),
+    }]);
+
+    expect(served).toBe(2 * (WARMUP_REQUESTS + MEASURED_REQUESTS));
+    // Only seat sales or catalog edits during the run cause a re-render
+    expect(rendered).toBeLessThan(served / 10);
+    // The gzip variant is sent compressed
+    expect(results[1].responseBytes).toBeLessThanOrEqual(results[0].responseBytes);
+  }, 120000);
+});
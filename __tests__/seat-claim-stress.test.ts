@@ -0,0 +1,157 @@
+import fetch from 'node-fetch';
+
+// Seat endpoints are served by the Spring backend directly
+const BACKEND_URL = 'http://localhost:8080/api';
+const CONCURRENT_REQUESTS = 50;
+// Seats can only be reserved by the booking's customer. Set SEAT_STRESS_EMAIL and
+// SEAT_STRESS_PASSWORD to a test account to run these tests
+const STRESS_EMAIL = process.env.SEAT_STRESS_EMAIL;
+const STRESS_PASSWORD = process.env.SEAT_STRESS_PASSWORD;
+// Run against a backend started with --rate-limit.enabled=false, so the limiter doesn't turn the
+// load into 429s and the run measures contention
+
+describe('Seat claiming under contention', () => {
+  let showId: number | null = null;
+  let customerId: number | null = null;
+  let authorization = '';
+  const bookingIds: number[] = [];
+
+  const createBooking = async (): Promise<number> => {
+    const response = await fetch(`${BACKEND_URL}/bookings/add`, {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({ customerId })
+    });
+    expect(response.status).toBe(200);
+    const bookingId = await response.json();
+    bookingIds.push(bookingId);
+    return bookingId;
+  };
+
+  const takenSeats = async (): Promise<string[]> => {
+    const response = await fetch(`${BACKEND_URL}/tickets/seats/${showId}`);
+    return response.status === 204 ? [] : await response.json();
+  };
+
+  // Free seat labels in the default seat picker layout
+  const freeSeats = async (count: number): Promise<string[]> => {
+    const taken = new Set(await takenSeats());
+    const free: string[] = [];
+    for (let row = 0; row < 8 && free.length < count; row++) {
+      for (let col = 1; col <= 10 && free.length < count; col++) {
+        const label = `${String.fromCharCode(65 + row)}${col}`;
+        if (!taken.has(label)) free.push(label);
+      }
+    }
+    return free;
+  };
+
+  // Find a show time, and log in as the customer to book with
+  beforeAll(async () => {
+    try {
+      const moviesResponse = await fetch(`${BACKEND_URL}/movies`);
+      const movies = moviesResponse.ok ? await moviesResponse.json() : [];
+      const movie = movies.find((m: any) => Array.isArray(m.showTimes) && m.showTimes.length > 0);
+      if (movie) showId = movie.showTimes[0].showTimeId;
+
+      const limits = await (await fetch(`${BACKEND_URL}/metrics/rate-limits`)).json();
+      if (limits.enabled) {
+        console.log('Rate limiting is on, skipping seat stress test');
+        return;
+      }
+
+      if (STRESS_EMAIL && STRESS_PASSWORD) {
+        const loginResponse = await fetch(`${BACKEND_URL}/users/login`, {
+          method: 'POST',
+          headers: { 'Content-Type': 'application/json' },
+          body: JSON.stringify({ email: STRESS_EMAIL, password: STRESS_PASSWORD })
+        });
+        if (loginResponse.ok) {
+          const login = await loginResponse.json();
+          customerId = login.userId;
+          authorization = `Bearer ${login.token}`;
+        }
+      }
+    } catch (error) {
+      console.error('Failed to set up seat stress tests:', error);
+    }
+  });
+
+  // Remove the tickets and bookings the tests created
+  afterAll(async () => {
+    for (const bookingId of bookingIds) {
+      const ticketsResponse = await fetch(`${BACKEND_URL}/tickets/booking/${bookingId}`);
+      if (ticketsResponse.ok) {
+        const tickets = await ticketsResponse.json();
+        for (const ticket of tickets) {
+          await fetch(`${BACKEND_URL}/tickets/delete/${ticket.ticketId}`, { method: 'DELETE' });
+        }
+      }
+      await fetch(`${BACKEND_URL}/bookings/delete/${bookingId}`, { method: 'DELETE' });
+    }
+  });
+
+  test('Exactly one of many concurrent claims for the same seat succeeds', async () => {
+    if (!showId || !customerId) {
+      console.log('No show time or signed-in customer available, skipping seat stress test');
+      return;
+    }
+
+    const bookingId = await createBooking();
+    const [seat] = await freeSeats(1);
+    if (!seat) {
+      console.log('Show time is full, skipping seat stress test');
+      return;
+    }
+
+    const responses = await Promise.all(
+      Array.from({ length: CONCURRENT_REQUESTS }, () =>
+        fetch(`${BACKEND_URL}/tickets/add`, {
+          method: 'POST',
+          headers: { 'Content-Type': 'application/json', 'Authorization': authorization },
+          body: JSON.stringify({ bookingId, showId, ticketType: 'adult', seatNumber: seat })
+        })
+      )
+    );
+    const statuses = responses.map(r => r.status);
+
+    expect(statuses.filter(s => s === 200).length).toBe(1);
+    expect(statuses.filter(s => s === 409).length).toBe(CONCURRENT_REQUESTS - 1);
+
+    const seats = await takenSeats();
+    expect(seats.filter(s => s === seat).length).toBe(1);
+  });
+
+  test('Overlapping multi-seat reservations never double-book a seat', async () => {
+    if (!showId || !customerId) {
+      console.log('No show time or signed-in customer available, skipping seat stress test');
+      return;
+    }
+
+    const seats = await freeSeats(2);
+    if (seats.length < 2) {
+      console.log('Not enough free seats, skipping seat stress test');
+      return;
+    }
+
+    const bookings = await Promise.all(Array.from({ length: 10 }, () => createBooking()));
+    const responses = await Promise.all(
+      bookings.map(bookingId =>
+        fetch(`${BACKEND_URL}/bookings/${bookingId}/tickets`, {
+          method: 'POST',
+          headers: { 'Content-Type': 'application/json', 'Authorization': authorization },
+          body: JSON.stringify(seats.map(seatNumber => ({ showId, ticketType: 'adult', seatNumber })))
+        })
+      )
+    );
+    const statuses = responses.map(r => r.status);
+
+    expect(statuses.filter(s => s === 200).length).toBe(1);
+    expect(statuses.filter(s => s === 409).length).toBe(bookings.length - 1);
+
+    const taken = await takenSeats();
+    for (const seat of seats) {
+      expect(taken.filter(s => s === seat).length).toBe(1);
+    }
+  });
+});
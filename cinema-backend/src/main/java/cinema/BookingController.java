@@ -1,8 +1,13 @@
 package cinema;
 
+import java.sql.Timestamp;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -12,7 +17,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -22,16 +29,36 @@ public class BookingController {
 
     private final BookingDAO bookingDAO;
     private final UserDAO userDAO;
+    private final TicketDAO ticketDAO;
+    private final SeatHoldManager seatHoldManager;
+    private final IdempotencyStore idempotencyStore;
+    private final WaitingRoom waitingRoom;
+    private final TicketPricing ticketPricing;
+    private final SessionTokens sessionTokens;
 
     @Autowired
-    public BookingController(BookingDAO bookingDAO, UserDAO userDAO) {
+    public BookingController(BookingDAO bookingDAO, UserDAO userDAO, TicketDAO ticketDAO, SeatHoldManager seatHoldManager,
+                             IdempotencyStore idempotencyStore, WaitingRoom waitingRoom, TicketPricing ticketPricing,
+                             SessionTokens sessionTokens) {
         this.bookingDAO = bookingDAO;
         this.userDAO = userDAO;
+        this.ticketDAO = ticketDAO;
+        this.seatHoldManager = seatHoldManager;
+        this.idempotencyStore = idempotencyStore;
+        this.waitingRoom = waitingRoom;
+        this.ticketPricing = ticketPricing;
+        this.sessionTokens = sessionTokens;
     }
 
-    // Add a single booking shell
+    // Add a single booking shell. A retry with the same Idempotency-Key returns the same booking ID.
     @PostMapping("/add")
-    public ResponseEntity<Integer> CreateBookingShell(@RequestBody Booking bookingRequest) {
+    public ResponseEntity<Integer> CreateBookingShell(@RequestBody Booking bookingRequest,
+                                                      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        return idempotencyStore.execute("booking-add", idempotencyKey, "customerId=" + bookingRequest.getCustomerId(),
+            () -> createBookingShell(bookingRequest), Integer::valueOf);
+    }
+
+    private ResponseEntity<Integer> createBookingShell(Booking bookingRequest) {
         try {
             // Expecting only customerId in the request body
             int customerId = bookingRequest.getCustomerId();
@@ -62,6 +89,127 @@ public class BookingController {
         }
     }
 
+    // Reserve several seats for a pending booking in one transaction (all or nothing).
+    // Only the booking's customer can reserve, and prices come from the show times
+    @PostMapping("/{bookingId}/tickets")
+    public ResponseEntity<?> ReserveSeats(@PathVariable int bookingId, @RequestBody List<Ticket> tickets,
+                                          @RequestHeader(value = WaitingRoom.TOKEN_HEADER, required = false) String queueToken,
+                                          @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        try {
+            System.out.println("BookingController: Reserving " + (tickets == null ? 0 : tickets.size()) + " seats for booking ID " + bookingId);
+
+            SessionTokens.Session session = sessionTokens.resolve(authorization);
+            if (session == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Please log in to reserve seats.");
+            }
+            Booking booking = bookingDAO.getBookingById(bookingId);
+            if (booking == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Booking not found.");
+            }
+            if (booking.getCustomerId() != session.userId()) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("This booking belongs to another customer.");
+            }
+            if (!"pending".equals(booking.getStatus())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Booking is not pending.");
+            }
+
+            ticketPricing.price(tickets);
+            ResponseEntity<?> notAdmitted = waitingRoom.claim(tickets, queueToken, booking.getCustomerId());
+            if (notAdmitted != null) {
+                return notAdmitted;
+            }
+            List<Integer> ticketIds;
+            boolean booked = false;
+            try {
+                ticketIds = ticketDAO.addTickets(bookingId, tickets);
+                booked = true;
+            } finally {
+                waitingRoom.finish(queueToken, booked);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("bookingId", bookingId);
+            response.put("ticketIds", ticketIds);
+            return ResponseEntity.ok(response);
+        } catch (SeatUnavailableException e) {
+            System.out.println("BookingController: " + e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            response.put("showId", e.getShowId());
+            response.put("seats", e.getSeatNumbers());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (BookingNotPendingException e) {
+            System.out.println("BookingController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Booking is not pending.");
+        } catch (SeatInventoryUnavailableException e) {
+            System.out.println("BookingController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+        } catch (DuplicateKeyException e) {
+            System.out.println("BookingController: Seat already sold for booking ID " + bookingId + " (unique key)");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("One or more seats are already taken.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("BookingController: Invalid reservation request: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            System.out.println("BookingController: Error reserving seats: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error while reserving seats.");
+        }
+    }
+
+    // Get when the seat hold on a pending booking expires
+    @GetMapping("/{bookingId}/hold")
+    public ResponseEntity<?> GetHold(@PathVariable int bookingId) {
+        Timestamp expiresAt = seatHoldManager.getExpiry(bookingId);
+        if (expiresAt == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No active hold for booking " + bookingId);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("bookingId", bookingId);
+        response.put("expiresAt", expiresAt);
+        return ResponseEntity.ok(response);
+    }
+
+    // Extend the seat hold on a pending booking
+    @PutMapping("/{bookingId}/hold/extend")
+    public ResponseEntity<?> ExtendHold(@PathVariable int bookingId, @RequestParam(defaultValue = "5") int minutes) {
+        try {
+            System.out.println("BookingController: Extending hold for booking ID " + bookingId + " by " + minutes + " minutes");
+            Timestamp expiresAt = seatHoldManager.extend(bookingId, minutes);
+            if (expiresAt == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No active hold for booking " + bookingId);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("bookingId", bookingId);
+            response.put("expiresAt", expiresAt);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            System.out.println("BookingController: Error extending hold: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error while extending hold.");
+        }
+    }
+
+    // Release the seat hold now: cancels the pending booking and frees its seats
+    @DeleteMapping("/{bookingId}/hold")
+    public ResponseEntity<String> ReleaseHold(@PathVariable int bookingId) {
+        try {
+            System.out.println("BookingController: Releasing hold for booking ID " + bookingId);
+            if (seatHoldManager.release(bookingId)) {
+                return ResponseEntity.ok("Hold released and booking cancelled.");
+            }
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No active hold for booking " + bookingId);
+        } catch (Exception e) {
+            System.out.println("BookingController: Error releasing hold: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error while releasing hold.");
+        }
+    }
+
     // Get bookings by customer ID 
     @GetMapping("/customer/{customerId}")
     public ResponseEntity<List<Booking>> FetchBookingsForCustomer(@PathVariable int customerId) {
@@ -2,6 +2,7 @@ package cinema;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.math.BigDecimal;
@@ -11,39 +12,49 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Repository
 public class BookingDAO {
 
     private final JdbcTemplate jdbcTemplate;
-    private final UserDAO userDAO;
     private final TicketDAO ticketDAO;
-    private final EmailService emailService;
+    private final EmailOutbox emailOutbox;
+    private final SeatHoldManager seatHoldManager;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public BookingDAO(JdbcTemplate jdbcTemplate, UserDAO userDAO, TicketDAO ticketDAO, EmailService emailService) {
+    public BookingDAO(JdbcTemplate jdbcTemplate, TicketDAO ticketDAO, EmailOutbox emailOutbox,
+                      SeatHoldManager seatHoldManager, TransactionTemplate transactionTemplate) {
         this.jdbcTemplate = jdbcTemplate;
-        this.userDAO = userDAO;
+        this.transactionTemplate = transactionTemplate;
         this.ticketDAO = ticketDAO;
-        this.emailService = emailService;
+        this.emailOutbox = emailOutbox;
+        this.seatHoldManager = seatHoldManager;
     }
 
     // Create a single booking entry (shell)
     public int createBooking(Booking booking) {
-        // Insert only customer_id and default status/timestamp
-        String sql = "INSERT INTO booking (customer_id, status) VALUES (?, 'pending')"; 
+        // Insert only customer_id, default status/timestamp and when the seat hold expires
+        String sql = "INSERT INTO booking (customer_id, status, hold_expires_at) VALUES (?, 'pending', ?)"; 
         KeyHolder keyHolder = new GeneratedKeyHolder();
+        Timestamp holdExpiresAt = seatHoldManager.newHoldExpiry();
     
         try {
             jdbcTemplate.update(connection -> {
                 PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
                 ps.setInt(1, booking.getCustomerId());
+                ps.setTimestamp(2, holdExpiresAt);
 
                 return ps;
             }, keyHolder);
     
             Number key = keyHolder.getKey();
-            return key != null ? key.intValue() : -1; // Return generated booking_id
+            if (key == null) {
+                return -1;
+            }
+            seatHoldManager.hold(key.intValue(), holdExpiresAt);
+            return key.intValue(); // Return generated booking_id
     
         } catch (Exception e) {
             System.out.println("BookingDAO: Failed to create booking shell - " + e.getMessage());
@@ -51,6 +62,40 @@ public class BookingDAO {
         }
     }
 
+    // Checkout in one go: claim the seats, then write a confirmed booking and its tickets in a
+    // single transaction together with the confirmation email's outbox row. The tickets must
+    // already be validated and priced.
+    public Booking createConfirmedBooking(int customerId, List<Ticket> tickets) {
+        ticketDAO.claimSeats(tickets);
+
+        Timestamp bookedAt = new Timestamp(System.currentTimeMillis());
+        Integer bookingId;
+        try {
+            bookingId = transactionTemplate.execute(status -> {
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO booking (customer_id, booking_datetime, status) VALUES (?, ?, 'confirmed')",
+                        Statement.RETURN_GENERATED_KEYS);
+                    ps.setInt(1, customerId);
+                    ps.setTimestamp(2, bookedAt);
+                    return ps;
+                }, keyHolder);
+
+                int id = keyHolder.getKey().intValue();
+                ticketDAO.insertTickets(id, tickets);
+                emailOutbox.enqueueOrderConfirmation(id);
+                return id;
+            });
+        } catch (RuntimeException e) {
+            ticketDAO.handleFailedInsert(tickets, e);
+            throw e;
+        }
+        ticketDAO.confirmSeats(tickets);
+        System.out.println("BookingDAO: Checked out booking ID " + bookingId + " with " + tickets.size() + " tickets");
+        return new Booking(bookingId, customerId, bookedAt, "confirmed");
+    }
+
     // Get bookings by customer ID 
     public List<Booking> getBookingsByCustomerId(int customerId) {
         String sql = "SELECT booking_id, customer_id, booking_datetime, status FROM booking WHERE customer_id = ?";
@@ -84,75 +129,34 @@ public class BookingDAO {
     public boolean deleteBookingById(int bookingId) {
 
         String sql = "DELETE FROM booking WHERE booking_id = ?";
-        return jdbcTemplate.update(sql, bookingId) > 0;
+        boolean deleted = jdbcTemplate.update(sql, bookingId) > 0;
+        if (deleted) {
+            seatHoldManager.clear(bookingId);
+        }
+        return deleted;
     }
 
-    // update booking status to confirmed (including email sending)
+    // Update booking status to confirmed. The confirmation email is queued in the same
+    // transaction and sent by EmailOutbox, so this never waits on the mail server.
     public int updateBookingStatusToConfirmed(int bookingId) {
         String sql = "UPDATE booking SET status = 'confirmed' WHERE booking_id = ? AND status = 'pending'"; 
         try {
-            int rowsAffected = jdbcTemplate.update(sql, bookingId);
-            
-            // If update was successful, send confirmation email
-            if (rowsAffected > 0) {
-                try {
-                    // 1. Get Booking details (to find customerId)
-                    Booking booking = getBookingById(bookingId); 
-                    if (booking == null) {
-                        System.out.println("BookingDAO: Cannot send email, booking not found after update: " + bookingId);
-                        return rowsAffected; 
-                    }
-                    
-                    // 2. Get User email
-                    User user = userDAO.getUserProfileById(booking.getCustomerId());
-                    if (user == null || user.getEmail() == null) {
-                        System.out.println("BookingDAO: Cannot send email, user or email not found for booking: " + bookingId);
-                        return rowsAffected; 
-                    }
-                    String userEmail = user.getEmail();
-                    
-                    // 3. Get Tickets for the booking
-                    List<Ticket> tickets = ticketDAO.getTicketsByBookingId(bookingId);
-                    if (tickets.isEmpty()) {
-                        System.out.println("BookingDAO: Cannot send email, no tickets found for booking: " + bookingId);
-
-                    }
-                    
-                    // 4. Send the email (passing the list of tickets)
-                    emailService.sendOrderConfirm(userEmail, tickets);
-                    System.out.println("BookingDAO: Order confirmation email initiated for booking ID: " + bookingId + " to " + userEmail);
-                    
-                } catch (Exception emailEx) {
-                    // Log email sending error but don't fail the booking confirmation
-                    System.err.println("BookingDAO: Error sending confirmation email for booking ID " + bookingId + ": " + emailEx.getMessage());
-                    emailEx.printStackTrace();
+            Integer rowsAffected = transactionTemplate.execute(status -> {
+                int rows = jdbcTemplate.update(sql, bookingId);
+                if (rows > 0) {
+                    emailOutbox.enqueueOrderConfirmation(bookingId);
                 }
+                return rows;
+            });
+
+            if (rowsAffected != null && rowsAffected > 0) {
+                seatHoldManager.clear(bookingId);
             }
-            
-            return rowsAffected; 
+            return rowsAffected == null ? 0 : rowsAffected;
         } catch (Exception e) {
             System.out.println("BookingDAO: Failed to update booking status for ID " + bookingId + " - " + e.getMessage());
             e.printStackTrace(); 
             return -1; // Return -1 in case of failure
         }
     }
-
-    // Cancel pending bookings after 30 minutes 
-    public int cancelPendingBookingsAfter30Minutes() {
-        System.out.println("Cancelling pending bookings");
-        String sql = """
-            UPDATE booking
-            SET status = 'cancelled'
-            WHERE status = 'pending'
-              AND booking_datetime < NOW() - INTERVAL 30 MINUTE
-        """;
-    
-        try {
-            return jdbcTemplate.update(sql);
-        } catch (Exception e) {
-            System.out.println("BookingDAO: Failed to cancel pending bookings after 30 minutes - " + e.getMessage());
-            return 0;
-        }
-    }
-    
 }
@@ -0,0 +1,18 @@
+package cinema;
+
+// Thrown when seats are added to a booking that is no longer pending, e.g. one whose hold expired
+public class BookingNotPendingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int bookingId;
+
+    public BookingNotPendingException(int bookingId) {
+        super("Booking " + bookingId + " is not pending");
+        this.bookingId = bookingId;
+    }
+
+    public int getBookingId() {
+        return bookingId;
+    }
+}
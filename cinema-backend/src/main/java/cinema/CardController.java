@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -26,39 +28,57 @@ public class CardController {
 
     private final CardDAO cardDAO;
     private final JdbcTemplate jdbcTemplate;
+    private final SessionTokens sessionTokens;
 
     @Autowired
-    public CardController(CardDAO cardDAO, JdbcTemplate jdbcTemplate) {
+    public CardController(CardDAO cardDAO, JdbcTemplate jdbcTemplate, SessionTokens sessionTokens) {
         this.cardDAO = cardDAO;
         this.jdbcTemplate = jdbcTemplate;
+        this.sessionTokens = sessionTokens;
     }
 
-    // Add a new card
+    // Add a new card for the signed-in customer
     @PostMapping("/add")
-    public ResponseEntity<?> addCard(@RequestBody Card card) {
+    public ResponseEntity<?> addCard(@RequestBody Card card,
+                                     @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         try {
+            SessionTokens.Session session = sessionTokens.resolve(authorization);
+            if (session == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Please log in to add a card");
+            }
     
-            if(cardDAO.countCard() == false){
+            if(cardDAO.countCard(session.userId()) == false){
                 return ResponseEntity.badRequest().body("Can't have more than 3 card");
             }
 
             System.out.println("CardController: Received card with cardholder name: " + card.getCardholderName());
 
             // Insert the card
-            int cardId = cardDAO.insertCard(card);
+            card.setCustomerId(session.userId());
+            int cardId = cardDAO.insertCardWithUserId(card, session.userId());
             card.setId(cardId);
             return ResponseEntity.status(HttpStatus.CREATED).body(card);  // Return the card object with generated ID
+        } catch (HashingBusyException e) {
+            System.out.println("CardController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.badRequest().body("Failed to add card: " + e.getMessage());
         }
     }
 
-    // Get all cards
+    // Get all cards of the signed-in customer
     @GetMapping("/activeCards")
-    public ResponseEntity<List<Card>> getAllActiveCards() {
+    public ResponseEntity<List<Card>> getAllActiveCards(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         try {
-            List<Card> cards = cardDAO.getAllCardsForActiveUser();
+            SessionTokens.Session session = sessionTokens.resolve(authorization);
+            if (session == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            List<Card> cards = cardDAO.getCardsForCustomer(session.userId());
 
             if (cards.isEmpty()) {
                 return ResponseEntity.noContent().build(); // Return 204 if no cards are found
@@ -95,6 +115,11 @@ public class CardController {
             card.setId(cardId);
             
             return ResponseEntity.status(HttpStatus.CREATED).body(card);
+        } catch (HashingBusyException e) {
+            System.out.println("CardController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.badRequest().body("Failed to add card: " + e.getMessage());
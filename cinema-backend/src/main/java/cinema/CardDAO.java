@@ -3,61 +3,24 @@ package cinema;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Collections;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class CardDAO {
 
-    private final UserDAO userDAO;
     private final JdbcTemplate jdbcTemplate;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
 
     @Autowired
-    public CardDAO(JdbcTemplate jdbcTemplate, UserDAO userDAO) {
+    public CardDAO(JdbcTemplate jdbcTemplate, PasswordHasher passwordHasher) {
         this.jdbcTemplate = jdbcTemplate;
-        this.userDAO = userDAO;
-        this.passwordEncoder = new BCryptPasswordEncoder();
-    }
-
-    // Add a new card
-    public int insertCard(Card card) throws SQLException {
-        // Debugging log
-        System.out.println("CardDAO: Inserting card for cardholder: " + card.getCardholderName());
-
-        // Extract and encrypt card number parts
-        String cardNumber = card.getCardNumber();
-        String lastFourDigits = cardNumber.length() > 4 ? cardNumber.substring(cardNumber.length() - 4) : cardNumber;
-        String cardPrefix = cardNumber.length() > 4 ? cardNumber.substring(0, cardNumber.length() - 4) : "";
-        String encryptedPrefix = passwordEncoder.encode(cardPrefix);
-        String storedCardNumber = encryptedPrefix + ":" + lastFourDigits;
-        
-        String encryptedCvv = passwordEncoder.encode(card.getCvv());
-
-        String sql = "INSERT INTO card (cardholder_name, card_number, cvv, card_address, expiration_date, customer_id) " +
-                     "VALUES (?, ?, ?, ?, ?, ?)";
-
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, card.getCardholderName());
-            ps.setString(2, storedCardNumber);
-            ps.setString(3, encryptedCvv);
-            ps.setString(4, card.getCardAddress());
-            ps.setString(5, card.getExpirationDate());
-            ps.setInt(6, userDAO.getActiveUserId());
-            return ps;
-        }, keyHolder);
-
-        return keyHolder.getKey().intValue();  // Return the generated card ID
+        this.passwordHasher = passwordHasher;
     }
 
     // Get all cards
@@ -83,23 +46,14 @@ public class CardDAO {
         }
     }
 
-    // Get all cards for the active user
-    public List<Card> getAllCardsForActiveUser() {
+    // Get all cards for a customer
+    public List<Card> getCardsForCustomer(int customerId) {
         try {
-            // Get the active user ID
-            Integer activeUserId = userDAO.getActiveUserId();
-            
-            if (activeUserId == null) {
-                System.out.println("No active user found");
-                return Collections.emptyList(); // Return an empty list if no active user is found
-            }
-            
-            // Query to get all cards for the active user
             String query = "SELECT * FROM card WHERE customer_id = ?";
             
 
             List<Card> cards = jdbcTemplate.query(query, 
-                new Object[]{activeUserId}, 
+                new Object[]{customerId}, 
                 (rs, rowNum) -> {
                     // Create new Card object and map the result set to its fields
                     Card card = new Card();
@@ -124,9 +78,9 @@ public class CardDAO {
             return cards;
         
         } catch (Exception e) {
-            System.out.println("CardDAO: Error in getAllCardsForActiveUser: " + e.getMessage());
+            System.out.println("CardDAO: Error in getCardsForCustomer: " + e.getMessage());
             e.printStackTrace();
-            throw new RuntimeException("Failed to fetch cards for active user", e);
+            throw new RuntimeException("Failed to fetch cards for customer " + customerId, e);
         }
     }
 
@@ -158,6 +112,13 @@ public class CardDAO {
     }
     
 
+    // Check a saved card belongs to the given customer
+    public boolean cardBelongsToCustomer(int cardId, int customerId) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card WHERE id = ? AND customer_id = ?",
+            Integer.class, cardId, customerId);
+        return count != null && count > 0;
+    }
+
     // Utility method to mask card number (Show only last 4 digits)
     private String maskCardNumber(String cardNumber) {
         if (cardNumber == null || cardNumber.length() < 4) {
@@ -166,12 +127,11 @@ public class CardDAO {
         return "**** **** **** " + cardNumber.substring(cardNumber.length() - 4);
     }
 
-    public boolean countCard(){
-        Integer actUserId = userDAO.getActiveUserId();
-
+    // Can the customer save another card? (at most 3)
+    public boolean countCard(int customerId){
         try {
             String query = "SELECT COUNT(*) FROM card WHERE customer_id = ?";
-            Integer count = jdbcTemplate.queryForObject(query, Integer.class, actUserId);
+            Integer count = jdbcTemplate.queryForObject(query, Integer.class, customerId);
             
             return count < 3;  
             
@@ -191,10 +151,11 @@ public class CardDAO {
         String cardNumber = card.getCardNumber();
         String lastFourDigits = cardNumber.length() > 4 ? cardNumber.substring(cardNumber.length() - 4) : cardNumber;
         String cardPrefix = cardNumber.length() > 4 ? cardNumber.substring(0, cardNumber.length() - 4) : "";
-        String encryptedPrefix = passwordEncoder.encode(cardPrefix);
-        String storedCardNumber = encryptedPrefix + ":" + lastFourDigits;
+        // Both hashes run in parallel on the hashing pool
+        List<String> hashes = passwordHasher.encodeAll(cardPrefix, card.getCvv());
+        String storedCardNumber = hashes.get(0) + ":" + lastFourDigits;
         
-        String encryptedCvv = passwordEncoder.encode(card.getCvv());
+        String encryptedCvv = hashes.get(1);
 
         String sql = "INSERT INTO card (cardholder_name, card_number, cvv, card_address, expiration_date, customer_id) " +
                      "VALUES (?, ?, ?, ?, ?, ?)";
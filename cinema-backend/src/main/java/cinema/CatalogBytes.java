@@ -0,0 +1,106 @@
+package cinema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// The full catalog listing as ready-to-send bytes, plain and gzipped. It is rendered once per
+// catalog ETag and then written out as-is, so GET /api/movies no longer runs Jackson per
+// request. The caller passes the CatalogCache.Catalog its tag was taken from, so bytes are never
+// cached under a tag newer than they are. Only a newer catalog replaces the rendering: a request
+// still holding an older one is sent the current bytes, under their own tag. The arrays are
+// shared between requests and must never be modified.
+@Component
+public class CatalogBytes {
+
+    // One rendering of the catalog, for the ETag and catalog versions it was built under
+    public record Rendered(String etag, long generation, long seatChanges, byte[] json, byte[] gzip) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private volatile Rendered current;
+
+    private final LongAdder serves = new LongAdder();
+    private final LongAdder renders = new LongAdder();
+    private final AtomicLong lastRenderMillis = new AtomicLong();
+    private final AtomicLong lastRenderAllocatedBytes = new AtomicLong();
+
+    @Autowired
+    public CatalogBytes(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // The catalog rendered at least as new as the given one, rendering it under this ETag if the
+    // current rendering is older
+    public Rendered get(String etag, CatalogCache.Catalog catalog) {
+        serves.increment();
+        Rendered rendered = current;
+        if (rendered != null && !olderThan(rendered, catalog)) {
+            return rendered;
+        }
+        synchronized (this) {
+            rendered = current;
+            if (rendered == null || olderThan(rendered, catalog)) {
+                rendered = render(etag, catalog);
+                current = rendered;
+            }
+            return rendered;
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Rendered rendered = current;
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("serves", serves.sum());
+        metrics.put("renders", renders.sum());
+        metrics.put("jsonBytes", rendered == null ? 0 : rendered.json().length);
+        metrics.put("gzipBytes", rendered == null ? 0 : rendered.gzip().length);
+        metrics.put("lastRenderMillis", lastRenderMillis.get());
+        // What serializing the catalog costs; before this class every request paid it
+        metrics.put("lastRenderAllocatedBytes", lastRenderAllocatedBytes.get());
+        return metrics;
+    }
+
+    private static boolean olderThan(Rendered rendered, CatalogCache.Catalog catalog) {
+        return rendered.generation() < catalog.generation()
+            || (rendered.generation() == catalog.generation() && rendered.seatChanges() < catalog.seatChanges());
+    }
+
+    private Rendered render(String etag, CatalogCache.Catalog catalog) {
+        long started = System.nanoTime();
+        long allocatedBefore = allocatedBytes();
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(catalog.movies());
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(json);
+            }
+            renders.increment();
+            lastRenderMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            lastRenderAllocatedBytes.set(allocatedBytes() - allocatedBefore);
+            return new Rendered(etag, catalog.generation(), catalog.seatChanges(), json, compressed.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to render the catalog", e);
+        }
+    }
+
+    // Bytes allocated so far by this thread, where the JVM can tell us
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,193 @@
+package cinema;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Read-through cache of the movie catalog. Browsing is served from one snapshot of every
+// movie and its show times, built with MovieDAO's set-based load; concurrent misses share
+// a single load. Movie and show time changes invalidate the snapshot and a new one is built
+// straight away. Seat sales patch available seats in place, so they don't force a rebuild.
+// Snapshot objects are shared between requests and must not be modified by callers.
+// Responses served from here are tagged with the versions getCatalog() reports, not with
+// ResourceVersions: DAOs bump those before this cache is invalidated.
+@Component
+public class CatalogCache implements SeatChangeListener {
+
+    // One consistent view of the catalog
+    private record Snapshot(long generation, List<Movie> movies, Map<Integer, Movie> byId, Map<Integer, ShowTime> showTimes) {
+    }
+
+    // The catalog with the versions it reflects: the generation it was built under and the seat
+    // changes patched in. The movies are at least as new as both, never older
+    public record Catalog(long generation, long seatChanges, List<Movie> movies, Map<Integer, Movie> byId) {
+    }
+
+    private final MovieDAO movieDAO;
+    private final long refreshSeconds;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong seatChanges = new AtomicLong();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Snapshot>> loading = new AtomicReference<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "catalog-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final AtomicLong lastRebuildMillis = new AtomicLong();
+
+    @Autowired
+    public CatalogCache(MovieDAO movieDAO, @Value("${catalog.cache.refresh-seconds:300}") long refreshSeconds) {
+        this.movieDAO = movieDAO;
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    @PostConstruct
+    public void start() {
+        // Picks up changes made outside this process and any drift in seat counts. Each refresh is a
+        // new generation, so the catalog tags and CatalogBytes' rendering move on with it
+        refresher.scheduleWithFixedDelay(this::invalidate, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    public List<Movie> getAllMovies() {
+        return current().movies();
+    }
+
+    public Catalog getCatalog() {
+        // Counted before the snapshot is read, and patched before they are counted
+        long seats = seatChanges.get();
+        Snapshot current = current();
+        return new Catalog(current.generation(), seats, current.movies(), current.byId());
+    }
+
+    // The movie with the given ID, or null if there is none
+    public Movie getMovie(int movieId) {
+        return current().byId().get(movieId);
+    }
+
+    // Drop the snapshot after movies or show times change, and start building the next one
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+        invalidations.increment();
+        try {
+            refresher.execute(() -> {
+                try {
+                    current();
+                } catch (Exception e) {
+                    System.out.println("CatalogCache: Error rebuilding catalog: " + e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            // Shutting down; the next read loads it
+        }
+    }
+
+    @Override
+    public void seatTaken(int showId, String seatNumber) {
+        adjustAvailableSeats(showId, -1);
+    }
+
+    @Override
+    public void seatReleased(int showId, String seatNumber) {
+        adjustAvailableSeats(showId, 1);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Snapshot current = snapshot.get();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("coalescedMisses", coalesced.sum());
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("invalidations", invalidations.sum());
+        metrics.put("lastRebuildMillis", lastRebuildMillis.get());
+        metrics.put("cachedMovies", current == null ? 0 : current.movies().size());
+        return metrics;
+    }
+
+    private Snapshot current() {
+        Snapshot cached = snapshot.get();
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        // Single flight: the first miss loads, everyone else waits for that load
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> inFlight = loading.compareAndExchange(null, mine);
+        if (inFlight != null) {
+            coalesced.increment();
+            return inFlight.join();
+        }
+        try {
+            Snapshot built = build();
+            // Only install it if nothing changed while it was loading
+            if (built.generation() == generation.get()) {
+                snapshot.set(built);
+            }
+            mine.complete(built);
+            return built;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.set(null);
+        }
+    }
+
+    private Snapshot build() {
+        long started = System.nanoTime();
+        long buildGeneration = generation.get();
+        List<Movie> movies = movieDAO.getAllMovies();
+        Map<Integer, Movie> byId = new HashMap<>();
+        Map<Integer, ShowTime> showTimes = new HashMap<>();
+        for (Movie movie : movies) {
+            byId.put(movie.getMovieId(), movie);
+            for (ShowTime showTime : movie.getShowTimes()) {
+                showTimes.put(showTime.getShowTimeId(), showTime);
+            }
+        }
+        rebuilds.increment();
+        lastRebuildMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return new Snapshot(buildGeneration, Collections.unmodifiableList(movies), Map.copyOf(byId), Map.copyOf(showTimes));
+    }
+
+    private void adjustAvailableSeats(int showId, int delta) {
+        Snapshot current = snapshot.get();
+        ShowTime showTime = current == null ? null : current.showTimes().get(showId);
+        if (showTime != null) {
+            synchronized (showTime) {
+                showTime.setAvailableSeats(showTime.getAvailableSeats() + delta);
+            }
+        }
+        seatChanges.incrementAndGet();
+    }
+}
@@ -0,0 +1,270 @@
+package cinema;
+
+import java.math.BigDecimal;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
+import java.time.DateTimeException;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@RestController
+@RequestMapping("/api/checkout")
+@CrossOrigin(origins = "http://localhost:3000")
+public class CheckoutController {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final BookingDAO bookingDAO;
+    private final TicketDAO ticketDAO;
+    private final UserDAO userDAO;
+    private final CardDAO cardDAO;
+    private final PromotionDAO promotionDAO;
+    private final SeatInventory seatInventory;
+    private final WaitingRoom waitingRoom;
+    private final TicketPricing ticketPricing;
+    private final IdempotencyStore idempotencyStore;
+    private final SessionTokens sessionTokens;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public CheckoutController(BookingDAO bookingDAO, TicketDAO ticketDAO, UserDAO userDAO, CardDAO cardDAO,
+                              PromotionDAO promotionDAO, SeatInventory seatInventory, WaitingRoom waitingRoom,
+                              TicketPricing ticketPricing, IdempotencyStore idempotencyStore, SessionTokens sessionTokens,
+                              ObjectMapper objectMapper) {
+        this.bookingDAO = bookingDAO;
+        this.ticketDAO = ticketDAO;
+        this.userDAO = userDAO;
+        this.cardDAO = cardDAO;
+        this.promotionDAO = promotionDAO;
+        this.seatInventory = seatInventory;
+        this.waitingRoom = waitingRoom;
+        this.ticketPricing = ticketPricing;
+        this.idempotencyStore = idempotencyStore;
+        this.sessionTokens = sessionTokens;
+        this.objectMapper = objectMapper;
+    }
+
+    // Place a whole order in one call: validate, then write a confirmed booking and its tickets
+    // in one transaction. Returns the confirmed order; the confirmation email is sent in the background.
+    // A retry with the same Idempotency-Key gets the original answer instead of a second order.
+    // Only the signed-in customer can order for themselves, and only with their own saved cards.
+    @PostMapping
+    public ResponseEntity<?> checkout(@RequestBody CheckoutRequest request,
+                                      @RequestHeader(value = WaitingRoom.TOKEN_HEADER, required = false) String queueToken,
+                                      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        System.out.println("CheckoutController: Checkout for customer ID " + request.getCustomerId() + " with "
+            + (request.getTickets() == null ? 0 : request.getTickets().size()) + " tickets");
+
+        SessionTokens.Session session = sessionTokens.resolve(authorization);
+        if (session == null || session.userId() != request.getCustomerId()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Please log in to place an order.");
+        }
+
+        // A replay of a placed order is answered before the waiting room, whose token it has spent
+        return idempotencyStore.execute("checkout", idempotencyKey, fingerprint(request),
+            () -> admitAndPlaceOrder(request, queueToken), this::encode, this::decode);
+    }
+
+    // High-demand shows need an admitted queue token issued to the signed-in customer, which the order then spends
+    private ResponseEntity<Object> admitAndPlaceOrder(CheckoutRequest request, String queueToken) {
+        ResponseEntity<Map<String, Object>> notAdmitted = waitingRoom.claim(request.getTickets(), queueToken, request.getCustomerId());
+        if (notAdmitted != null) {
+            return ResponseEntity.status(notAdmitted.getStatusCode()).headers(notAdmitted.getHeaders()).body(notAdmitted.getBody());
+        }
+        ResponseEntity<Object> response = null;
+        try {
+            response = placeOrder(request);
+            return response;
+        } finally {
+            waitingRoom.finish(queueToken, response != null && response.getStatusCode().is2xxSuccessful());
+        }
+    }
+
+    private ResponseEntity<Object> placeOrder(CheckoutRequest request) {
+        try {
+            if (!userDAO.userExists(request.getCustomerId())) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Customer " + request.getCustomerId() + " does not exist.");
+            }
+            if (request.getCardId() != null) {
+                if (!cardDAO.cardBelongsToCustomer(request.getCardId(), request.getCustomerId())) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Card not found for this customer.");
+                }
+            } else {
+                String cardProblem = checkCard(request.getCard());
+                if (cardProblem != null) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(cardProblem);
+                }
+            }
+
+            BigDecimal discount = BigDecimal.ZERO;
+            String promoCode = request.getPromoCode();
+            if (promoCode != null && !promoCode.isBlank()) {
+                Double percentage = promotionDAO.validatePromotionCode(promoCode.trim());
+                if (percentage == null) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid promotion code.");
+                }
+                discount = BigDecimal.valueOf(percentage);
+            }
+
+            List<Ticket> tickets = request.getTickets();
+            // Prices come from the show times, whatever the client sent
+            ticketPricing.price(tickets);
+            ticketDAO.validateTickets(tickets);
+            BigDecimal subtotal = BigDecimal.ZERO;
+            BigDecimal total = BigDecimal.ZERO;
+            for (Ticket ticket : tickets) {
+                if (seatInventory.getShowSeats(ticket.getShowId()) == null) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Show time " + ticket.getShowId() + " does not exist.");
+                }
+                subtotal = subtotal.add(ticket.getPrice());
+                ticket.setPrice(ticket.getPrice()
+                    .multiply(HUNDRED.subtract(discount))
+                    .divide(HUNDRED, 2, RoundingMode.HALF_UP));
+                total = total.add(ticket.getPrice());
+            }
+
+            Booking booking = bookingDAO.createConfirmedBooking(request.getCustomerId(), tickets);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("bookingId", booking.getBookingId());
+            response.put("customerId", booking.getCustomerId());
+            response.put("status", booking.getStatus());
+            response.put("bookingDatetime", booking.getBookingDatetime());
+            response.put("tickets", tickets);
+            response.put("subtotal", subtotal);
+            response.put("discountPercentage", discount);
+            response.put("total", total);
+            return ResponseEntity.ok(response);
+        } catch (SeatUnavailableException e) {
+            System.out.println("CheckoutController: " + e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            response.put("showId", e.getShowId());
+            response.put("seats", e.getSeatNumbers());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (SeatInventoryUnavailableException e) {
+            System.out.println("CheckoutController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+        } catch (DuplicateKeyException e) {
+            System.out.println("CheckoutController: Seat already sold (unique key)");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("One or more seats are already taken.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("CheckoutController: Invalid checkout request: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            System.out.println("CheckoutController: Error during checkout: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error while processing checkout.");
+        }
+    }
+
+    // What makes two checkouts the same order. Fields are normalized so that a retry spelled slightly
+    // differently still matches; ticket prices are set by the server and so are not part of it. Only the
+    // last four digits of an unsaved card are used
+    private static String fingerprint(CheckoutRequest request) {
+        StringBuilder fingerprint = new StringBuilder()
+            .append("customerId=").append(request.getCustomerId())
+            .append(";cardId=").append(request.getCardId())
+            .append(";promoCode=").append(request.getPromoCode() == null ? "" : request.getPromoCode().trim().toUpperCase());
+        Card card = request.getCard();
+        if (card != null && card.getCardNumber() != null) {
+            String number = card.getCardNumber().replaceAll("[\\s-]", "");
+            fingerprint.append(";card=").append(number.substring(Math.max(0, number.length() - 4)))
+                .append('/').append(card.getExpirationDate() == null ? "" : card.getExpirationDate().trim());
+        }
+        if (request.getTickets() != null) {
+            for (Ticket ticket : request.getTickets()) {
+                if (ticket == null) {
+                    fingerprint.append(";-");
+                    continue;
+                }
+                fingerprint.append(';').append(ticket.getShowId())
+                    .append(',').append(ticket.getTicketType() == null ? "" : ticket.getTicketType().trim().toLowerCase())
+                    .append(',').append(ticket.getSeatNumber() == null ? "" : ticket.getSeatNumber().trim().toUpperCase());
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    // Responses are stored as JSON, so a replayed order or error message reads the same as the original
+    private String encode(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object decode(String body) {
+        try {
+            return objectMapper.readValue(body, Object.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Why an unsaved card can't be charged, or null if its details are complete and valid
+    private static String checkCard(Card card) {
+        if (card == null) {
+            return "A saved card or card details are required.";
+        }
+        if (card.getCardholderName() == null || card.getCardholderName().isBlank()) {
+            return "Cardholder name is required.";
+        }
+        String number = card.getCardNumber() == null ? "" : card.getCardNumber().replaceAll("[\\s-]", "");
+        if (!number.matches("\\d{13,19}") || !passesLuhn(number)) {
+            return "Card number is not valid.";
+        }
+        if (card.getCvv() == null || !card.getCvv().trim().matches("\\d{3,4}")) {
+            return "CVV is not valid.";
+        }
+        String expiration = card.getExpirationDate() == null ? "" : card.getExpirationDate().trim();
+        if (!expiration.matches("\\d{2}/\\d{2}")) {
+            return "Expiration date must be MM/YY.";
+        }
+        try {
+            YearMonth expires = YearMonth.of(2000 + Integer.parseInt(expiration.substring(3)), Integer.parseInt(expiration.substring(0, 2)));
+            if (expires.isBefore(YearMonth.now())) {
+                return "Card has expired.";
+            }
+        } catch (DateTimeException e) {
+            return "Expiration date must be MM/YY.";
+        }
+        return null;
+    }
+
+    private static boolean passesLuhn(String number) {
+        int sum = 0;
+        for (int i = 0; i < number.length(); i++) {
+            int digit = number.charAt(number.length() - 1 - i) - '0';
+            if (i % 2 == 1) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return sum % 10 == 0;
+    }
+}
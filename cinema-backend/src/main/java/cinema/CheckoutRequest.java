@@ -0,0 +1,66 @@
+package cinema;
+
+import java.util.List;
+
+// Body of POST /api/checkout: everything needed to place an order in one call
+public class CheckoutRequest {
+
+    private int customerId;
+    private Integer cardId;      // Saved card to charge; null when paying with a card that isn't saved
+    private Card card;           // Card to charge when cardId is null: cardholderName, cardNumber, cvv, expirationDate (MM/YY)
+    private String promoCode;    // Optional
+    private List<Ticket> tickets; // showId, ticketType and seatNumber of each seat; prices are set by the server
+
+    public CheckoutRequest() {
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(int customerId) {
+        this.customerId = customerId;
+    }
+
+    public Integer getCardId() {
+        return cardId;
+    }
+
+    public void setCardId(Integer cardId) {
+        this.cardId = cardId;
+    }
+
+    public Card getCard() {
+        return card;
+    }
+
+    public void setCard(Card card) {
+        this.card = card;
+    }
+
+    public String getPromoCode() {
+        return promoCode;
+    }
+
+    public void setPromoCode(String promoCode) {
+        this.promoCode = promoCode;
+    }
+
+    public List<Ticket> getTickets() {
+        return tickets;
+    }
+
+    public void setTickets(List<Ticket> tickets) {
+        this.tickets = tickets;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckoutRequest{" +
+                "customerId=" + customerId +
+                ", cardId=" + cardId +
+                ", promoCode='" + promoCode + '\'' +
+                ", tickets=" + tickets +
+                '}';
+    }
+}
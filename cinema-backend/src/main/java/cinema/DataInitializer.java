@@ -1,36 +1,74 @@
 package cinema;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+// Startup work, run in parallel. Steps the booking path depends on finish before the
+// application reports ready; the rest carry on in the background. Nothing here writes
+// to every row of a table: sessions live in signed tokens, not in user.status_id.
 @Component
 public class DataInitializer implements CommandLineRunner {
 
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private SeatHoldManager seatHoldManager;
+
+    @Autowired
+    private PromotionDispatcher promotionDispatcher;
+
+    @Autowired
+    private WaitingRoom waitingRoom;
+
+    @Autowired
+    private AdminInitializer adminInitializer;
 
     @Autowired
-   
-    private BookingDAO bookingDAO;
+    private MovieSearchIndex movieSearchIndex;
+
+    @Autowired
+    private MovieSuggester movieSuggester;
+
+    @Autowired
+    private StartupTimings startupTimings;
 
     @Override
     public void run(String... args) throws Exception {
+        ExecutorService startup = Executors.newFixedThreadPool(4, r -> {
+            Thread thread = new Thread(r, "startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Needed before serving: expired holds are cancelled on the first tick, and
+            // high-demand shows must not be bookable around their waiting room
+            List<CompletableFuture<?>> blocking = List.of(
+                CompletableFuture.supplyAsync(() -> startupTimings.time("loadPendingHolds", true, seatHoldManager::loadPendingHolds), startup),
+                CompletableFuture.supplyAsync(() -> startupTimings.time("loadHighDemandShows", true, waitingRoom::loadHighDemandShows), startup));
 
-        updateUserStatusToInactive(); // Update user status
-        bookingDAO.cancelPendingBookingsAfter30Minutes(); //cancle pending booking
-        
-    }
+            // Not needed to serve requests
+            CompletableFuture.runAsync(() -> startupTimings.time("ensureAdminAccount", false, () -> {
+                adminInitializer.ensureAdminAccount();
+                return null;
+            }), startup);
+            CompletableFuture.runAsync(() -> startupTimings.time("resumePromotions", false, promotionDispatcher::resumeUnfinished), startup);
+            CompletableFuture.runAsync(() -> startupTimings.time("buildSearchIndex", false, () -> {
+                movieSearchIndex.ensureBuilt();
+                return null;
+            }), startup);
+            CompletableFuture.runAsync(() -> startupTimings.time("buildSuggestions", false, () -> {
+                movieSuggester.ensureBuilt();
+                return null;
+            }), startup);
 
-    public void updateUserStatusToInactive() {
-        try {
-            String updateQuery = "UPDATE user SET status_id = 2"; // 2 means Inactive
-            int rowsUpdated = jdbcTemplate.update(updateQuery);
-            System.out.println("Updated " + rowsUpdated + " users' status to Inactive.");
-        } catch (Exception e) {
-            System.out.println("Error updating user status to Inactive: " + e.getMessage());
-            e.printStackTrace();
+            CompletableFuture.allOf(blocking.toArray(CompletableFuture<?>[]::new)).join();
+        } finally {
+            // Lets the background steps finish, then the threads go away
+            startup.shutdown();
         }
     }
-}
\ No newline at end of file
+}
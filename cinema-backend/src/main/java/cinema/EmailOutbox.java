@@ -0,0 +1,297 @@
+package cinema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Transactional outbox for booking emails. A row is written to email_outbox in the same
+// transaction as the booking change; a dispatcher claims due rows in batches and hands
+// them to a small worker pool. Each worker sends its batch over one SMTP connection.
+// Failed sends are retried with exponential backoff until max-attempts.
+@Component
+public class EmailOutbox {
+
+    private static final String ORDER_CONFIRM = "order_confirm";
+    private static final int STALE_SENDING_MINUTES = 10;
+    private static final int MAX_BACKOFF_SECONDS = 3600;
+
+    private record OutboxEmail(long id, String kind, int bookingId, String recipient, int attempts) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TicketDAO ticketDAO;
+    private final EmailService emailService;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long pollMillis;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "email-outbox-dispatch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong sentTotal = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong givenUp = new AtomicLong();
+
+    @Autowired
+    public EmailOutbox(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, TicketDAO ticketDAO,
+                       EmailService emailService,
+                       @Value("${email.outbox.workers:2}") int workerCount,
+                       @Value("${email.outbox.batch-size:20}") int batchSize,
+                       @Value("${email.outbox.max-attempts:8}") int maxAttempts,
+                       @Value("${email.outbox.poll-millis:5000}") long pollMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.ticketDAO = ticketDAO;
+        this.emailService = emailService;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.pollMillis = pollMillis;
+        // Queue holds one batch per worker, so the dispatcher never claims more than can be sent soon
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(workerCount), r -> {
+                Thread thread = new Thread(r, "email-outbox-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcher.scheduleWithFixedDelay(this::dispatch, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        workers.shutdown();
+    }
+
+    // Queue the order confirmation for a booking. Call inside the transaction that confirms it;
+    // the dispatcher is woken once that transaction commits.
+    public boolean enqueueOrderConfirmation(int bookingId) {
+        String sql = """
+            INSERT INTO email_outbox (kind, booking_id, recipient)
+            SELECT ?, b.booking_id, u.email
+            FROM booking b
+            JOIN user u ON u.user_id = b.customer_id
+            WHERE b.booking_id = ?
+            """;
+        int rows = jdbcTemplate.update(sql, ORDER_CONFIRM, bookingId);
+        if (rows == 0) {
+            System.out.println("EmailOutbox: No customer email for booking " + bookingId + ", nothing queued");
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wake();
+                }
+            });
+        } else {
+            wake();
+        }
+        return true;
+    }
+
+    // Send due emails now instead of at the next poll
+    public void wake() {
+        try {
+            dispatcher.execute(this::dispatch);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the rows stay in the outbox
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        jdbcTemplate.query("SELECT status, COUNT(*) AS n FROM email_outbox GROUP BY status",
+            rs -> {
+                metrics.put(rs.getString("status"), rs.getLong("n"));
+            });
+        metrics.put("sentTotal", sentTotal.get());
+        metrics.put("failedAttempts", failedAttempts.get());
+        metrics.put("givenUp", givenUp.get());
+        metrics.put("busyWorkers", workers.getActiveCount());
+        return metrics;
+    }
+
+    private void dispatch() {
+        try {
+            // Rows left in 'sending' by a crash or a stuck worker go back in line
+            jdbcTemplate.update("UPDATE email_outbox SET status = 'pending' WHERE status = 'sending' AND locked_at < NOW() - INTERVAL "
+                + STALE_SENDING_MINUTES + " MINUTE");
+
+            while (workers.getQueue().remainingCapacity() > 0) {
+                List<OutboxEmail> batch = claimBatch();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                try {
+                    workers.execute(() -> send(batch));
+                } catch (RejectedExecutionException e) {
+                    release(batch);
+                    return;
+                }
+                if (batch.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("EmailOutbox: Error dispatching emails: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Mark a batch of due rows as being sent
+    private List<OutboxEmail> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            List<OutboxEmail> batch = jdbcTemplate.query("""
+                SELECT id, kind, booking_id, recipient, attempts
+                FROM email_outbox
+                WHERE status = 'pending' AND next_attempt_at <= NOW()
+                ORDER BY id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+                """,
+                (rs, rowNum) -> new OutboxEmail(rs.getLong("id"), rs.getString("kind"), rs.getInt("booking_id"),
+                    rs.getString("recipient"), rs.getInt("attempts")),
+                batchSize);
+            if (!batch.isEmpty()) {
+                jdbcTemplate.update("UPDATE email_outbox SET status = 'sending', locked_at = NOW() WHERE id IN (" + placeholders(batch) + ")",
+                    ids(batch));
+            }
+            return batch;
+        });
+    }
+
+    private void release(List<OutboxEmail> batch) {
+        jdbcTemplate.update("UPDATE email_outbox SET status = 'pending' WHERE id IN (" + placeholders(batch) + ")", ids(batch));
+    }
+
+    private void send(List<OutboxEmail> batch) {
+        List<OutboxEmail> sent = new ArrayList<>();
+        Map<OutboxEmail, Exception> failed = new HashMap<>();
+        try {
+            Map<SimpleMailMessage, OutboxEmail> messages = new IdentityHashMap<>();
+            List<SimpleMailMessage> ordered = new ArrayList<>();
+            for (OutboxEmail email : batch) {
+                try {
+                    SimpleMailMessage message = render(email);
+                    messages.put(message, email);
+                    ordered.add(message);
+                } catch (Exception e) {
+                    failed.put(email, e);
+                }
+            }
+
+            Map<SimpleMailMessage, Exception> notSent = ordered.isEmpty() ? Map.of() : emailService.sendBatch(ordered);
+            for (SimpleMailMessage message : ordered) {
+                Exception error = notSent.get(message);
+                if (error == null) {
+                    sent.add(messages.get(message));
+                } else {
+                    failed.put(messages.get(message), error);
+                }
+            }
+        } catch (Exception e) {
+            for (OutboxEmail email : batch) {
+                failed.putIfAbsent(email, e);
+            }
+            sent.removeAll(failed.keySet());
+        }
+
+        try {
+            recordResults(sent, failed);
+        } catch (Exception e) {
+            System.out.println("EmailOutbox: Error recording send results: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private SimpleMailMessage render(OutboxEmail email) {
+        if (!ORDER_CONFIRM.equals(email.kind())) {
+            throw new IllegalStateException("Unknown email kind: " + email.kind());
+        }
+        List<Ticket> tickets = ticketDAO.getTicketsByBookingId(email.bookingId());
+        if (tickets.isEmpty()) {
+            throw new IllegalStateException("No tickets found for booking " + email.bookingId());
+        }
+        return emailService.buildOrderConfirm(email.recipient(), tickets);
+    }
+
+    private void recordResults(List<OutboxEmail> sent, Map<OutboxEmail, Exception> failed) {
+        if (!sent.isEmpty()) {
+            jdbcTemplate.update("UPDATE email_outbox SET status = 'sent', sent_at = NOW(), last_error = NULL WHERE id IN ("
+                + placeholders(sent) + ")", ids(sent));
+            sentTotal.addAndGet(sent.size());
+        }
+
+        List<Object[]> retries = new ArrayList<>();
+        List<Object[]> abandoned = new ArrayList<>();
+        for (Map.Entry<OutboxEmail, Exception> entry : failed.entrySet()) {
+            OutboxEmail email = entry.getKey();
+            String error = String.valueOf(entry.getValue().getMessage());
+            error = error.length() > 500 ? error.substring(0, 500) : error;
+            int attempts = email.attempts() + 1;
+            System.out.println("EmailOutbox: Attempt " + attempts + " for email " + email.id() + " failed: " + error);
+            if (attempts >= maxAttempts) {
+                abandoned.add(new Object[]{attempts, error, email.id()});
+            } else {
+                retries.add(new Object[]{attempts, error, backoffSeconds(attempts), email.id()});
+            }
+        }
+        if (!retries.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE email_outbox SET status = 'pending', attempts = ?, last_error = ?, "
+                + "next_attempt_at = NOW() + INTERVAL ? SECOND WHERE id = ?", retries);
+        }
+        if (!abandoned.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE email_outbox SET status = 'failed', attempts = ?, last_error = ? WHERE id = ?", abandoned);
+        }
+        failedAttempts.addAndGet(failed.size());
+        givenUp.addAndGet(abandoned.size());
+    }
+
+    // 30s, 1m, 2m, 4m ... capped at an hour, with jitter so a mail server outage doesn't end in a stampede
+    private long backoffSeconds(int attempts) {
+        long base = Math.min(30L << Math.min(attempts - 1, 20), MAX_BACKOFF_SECONDS);
+        return base + ThreadLocalRandom.current().nextLong(base / 4 + 1);
+    }
+
+    private static String placeholders(List<OutboxEmail> emails) {
+        return emails.stream().map(email -> "?").collect(Collectors.joining(", "));
+    }
+
+    private static Object[] ids(List<OutboxEmail> emails) {
+        return emails.stream().map(OutboxEmail::id).toArray();
+    }
+}
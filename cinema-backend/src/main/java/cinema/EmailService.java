@@ -2,16 +2,25 @@ package cinema;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.time.format.DateTimeFormatter;
 import java.math.BigDecimal;
 import cinema.ShowTime;
 import cinema.Ticket;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+
 @Service
 public class EmailService {
 
@@ -65,18 +74,7 @@ public class EmailService {
     
     public void sendPromotionEmail(String to, Promotion promotion) {
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(to);
-            message.setSubject("Cinema E-Booking System - Special Promotion");
-            message.setText("Dear Valued Customer,\n\n" +
-                    "We're excited to offer you a special promotion!\n\n" +
-                    promotion.getDescription() + "\n\n" +
-                    "Discount: " + promotion.getDiscountPercentage() + "% off your next purchase!\n\n" +
-                    "Use promotion code: " + promotion.getCode() + "\n\n" +
-                    "Simply enter this code at checkout to redeem your discount.\n\n" +
-                    "Best Regards,\nCinema E-Booking Team");
-            
-            mailSender.send(message);
+            mailSender.send(buildPromotionEmail(to, promotion));
             System.out.println("EmailService: Successfully sent promotion email to " + to);
         } catch (Exception e) {
             System.out.println("EmailService: Error sending promotion email: " + e.getMessage());
@@ -85,34 +83,50 @@ public class EmailService {
         }
     }
 
-    public void sendPromotionEmailBulk(List<String> recipients, Promotion promotion) {
+    public SimpleMailMessage buildPromotionEmail(String to, Promotion promotion) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(to);
+        message.setSubject("Cinema E-Booking System - Special Promotion");
+        message.setText("Dear Valued Customer,\n\n" +
+                "We're excited to offer you a special promotion!\n\n" +
+                promotion.getDescription() + "\n\n" +
+                "Discount: " + promotion.getDiscountPercentage() + "% off your next purchase!\n\n" +
+                "Use promotion code: " + promotion.getCode() + "\n\n" +
+                "Simply enter this code at checkout to redeem your discount.\n\n" +
+                "Best Regards,\nCinema E-Booking Team");
+        return message;
+    }
+
+    public void sendOrderConfirm(String to, List<Ticket> tickets) {
+        mailSender.send(buildOrderConfirm(to, tickets));
+        System.out.println("Order confirmation email sent to: " + to + " for " + tickets.size() + " tickets.");
+    }
+
+    // Send several messages over one SMTP connection. Returns the messages that failed, with the reason.
+    public Map<SimpleMailMessage, Exception> sendBatch(List<SimpleMailMessage> messages) {
+        Map<SimpleMailMessage, Exception> failed = new IdentityHashMap<>();
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            
-            // Convert list of emails to string array for the setTo method
-            String[] emailArray = recipients.toArray(new String[0]);
-            message.setTo(emailArray);
-            
-            // Use BCC instead of To for privacy reasons
-            message.setBcc(emailArray);
-            message.setSubject("Cinema E-Booking System - Special Promotion");
-            message.setText("Dear Valued Customer,\n\n" +
-                    "We're excited to offer you a special promotion!\n\n" +
-                    promotion.getDescription() + "\n\n" +
-                    "Discount: " + promotion.getDiscountPercentage() + "% off your next purchase!\n\n" +
-                    "Use promotion code: " + promotion.getCode() + "\n\n" +
-                    "Simply enter this code at checkout to redeem your discount.\n\n" +
-                    "Best Regards,\nCinema E-Booking Team");
-            
-            mailSender.send(message);
-            System.out.println("EmailService: Successfully sent bulk promotion email to " + recipients.size() + " recipients");
-        } catch (Exception e) {
-            System.out.println("EmailService: Error sending bulk promotion email: " + e.getMessage());
-            e.printStackTrace();
+            mailSender.send(messages.toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                // Connection-level failure: nothing was sent
+                messages.forEach(message -> failed.put(message, e));
+            }
+            e.getFailedMessages().forEach((message, cause) -> failed.put((SimpleMailMessage) message, cause));
+        } catch (RuntimeException e) {
+            messages.forEach(message -> failed.put(message, e));
         }
+        return failed;
     }
 
-    public void sendOrderConfirm(String to, List<Ticket> tickets) {
+    // Did a message fail because of the message itself (a refused or malformed address), so that
+    // sending it again can't help? Any other failure is the mail server or the connection to it
+    public static boolean isRecipientFailure(Exception failure) {
+        return failure instanceof SendFailedException || failure instanceof AddressException
+            || failure instanceof MailParseException || failure instanceof MailPreparationException;
+    }
+
+    public SimpleMailMessage buildOrderConfirm(String to, List<Ticket> tickets) {
         SimpleMailMessage message = new SimpleMailMessage();
         message.setTo(to);
         message.setSubject("Cinema E-Booking System - Order Confirmation");
@@ -127,8 +141,10 @@ public class EmailService {
 
         BigDecimal totalOrderPrice = BigDecimal.ZERO;
 
+        // Tickets of one order are usually for the same show time
+        Map<Integer, Optional<ShowTime>> showTimes = new LinkedHashMap<>();
         for (Ticket ticket : tickets) {
-            Optional<ShowTime> showTimeOpt = showTimeDAO.getShowTimeById(ticket.getShowId());
+            Optional<ShowTime> showTimeOpt = showTimes.computeIfAbsent(ticket.getShowId(), showTimeDAO::getShowTimeById);
             String showDateStr = "N/A";
             String showTimeStr = "N/A";
 
@@ -159,8 +175,7 @@ public class EmailService {
                  .append("Best Regards,\nCinema E-Booking Team");
 
         message.setText(emailText.toString());
-        mailSender.send(message);
-        System.out.println("Order confirmation email sent to: " + to + " for " + tickets.size() + " tickets.");
+        return message;
     }
     
     private String capitalize(String str) {
@@ -0,0 +1,11 @@
+package cinema;
+
+// Thrown when the password hashing pool is saturated and can't take more work right now
+public class HashingBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,211 @@
+package cinema;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Remembers the response to each Idempotency-Key so a retried POST gets the original
+// result instead of creating another row. Recent keys live in a bounded LRU map with a
+// TTL; every key is also written to the idempotency_key table so replays survive a
+// restart. Server errors and 429s are not remembered, so those requests can be retried for real.
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private record StoredResponse(String requestHash, int status, String body, long expiresAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+    private final Map<String, StoredResponse> recent;
+    private final ConcurrentHashMap<String, Boolean> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "idempotency-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public IdempotencyStore(JdbcTemplate jdbcTemplate,
+                            @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                            @Value("${idempotency.max-entries:10000}") int maxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = TimeUnit.HOURS.toMillis(ttlHours);
+        this.recent = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        purger.scheduleWithFixedDelay(this::purgeExpired, 10, 10, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        purger.shutdownNow();
+    }
+
+    // Run the action once per key. A retry with the same key and request gets the stored
+    // response back (decoded from its string form); the same key with a different request
+    // gets 422, and a retry while the first attempt is still running gets 409.
+    public <T> ResponseEntity<T> execute(String scope, String key, String request,
+                                         Supplier<ResponseEntity<T>> action, Function<String, T> decode) {
+        return execute(scope, key, request, action, body -> String.valueOf(body), decode);
+    }
+
+    // As above, for bodies whose toString() can't be decoded again: encode writes the stored form
+    public <T> ResponseEntity<T> execute(String scope, String key, String request, Supplier<ResponseEntity<T>> action,
+                                         Function<T, String> encode, Function<String, T> decode) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        String storeKey = scope + ":" + key;
+        String requestHash = sha256(request);
+
+        StoredResponse stored = lookUp(storeKey);
+        if (stored != null) {
+            return replay(storeKey, stored, requestHash, decode);
+        }
+        if (inFlight.putIfAbsent(storeKey, Boolean.TRUE) != null) {
+            System.out.println("IdempotencyStore: Request with key " + storeKey + " is still in progress");
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        try {
+            // It may have finished between the lookup and taking the in-flight slot
+            stored = lookUp(storeKey);
+            if (stored != null) {
+                return replay(storeKey, stored, requestHash, decode);
+            }
+
+            ResponseEntity<T> response = action.get();
+            // A 429 means the request was turned away unprocessed, e.g. by the waiting room, and a 409
+            // (seat taken, booking no longer pending) may well go through once the seat is free again
+            if (!response.getStatusCode().is5xxServerError() && response.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS
+                && response.getStatusCode() != HttpStatus.CONFLICT) {
+                remember(storeKey, new StoredResponse(requestHash, response.getStatusCode().value(),
+                    response.getBody() == null ? null : encode.apply(response.getBody()),
+                    System.currentTimeMillis() + ttlMillis));
+            }
+            return response;
+        } finally {
+            inFlight.remove(storeKey);
+        }
+    }
+
+    public int size() {
+        synchronized (recent) {
+            return recent.size();
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(String storeKey, StoredResponse stored, String requestHash, Function<String, T> decode) {
+        if (!stored.requestHash().equals(requestHash)) {
+            System.out.println("IdempotencyStore: Key " + storeKey + " reused for a different request");
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build();
+        }
+        System.out.println("IdempotencyStore: Replaying stored response for key " + storeKey);
+        return ResponseEntity.status(stored.status())
+            .header(REPLAYED_HEADER, "true")
+            .body(stored.body() == null ? null : decode.apply(stored.body()));
+    }
+
+    // Memory first; MySQL only for keys not seen since startup
+    private StoredResponse lookUp(String storeKey) {
+        long now = System.currentTimeMillis();
+        StoredResponse stored;
+        synchronized (recent) {
+            stored = recent.get(storeKey);
+        }
+        if (stored != null) {
+            return stored.expiresAt() > now ? stored : null;
+        }
+
+        List<StoredResponse> rows = jdbcTemplate.query(
+            "SELECT request_hash, status_code, response_body, expires_at FROM idempotency_key WHERE idem_key = ? AND expires_at > ?",
+            (rs, rowNum) -> new StoredResponse(rs.getString("request_hash"), rs.getInt("status_code"),
+                rs.getString("response_body"), rs.getTimestamp("expires_at").getTime()),
+            storeKey, new Timestamp(now));
+        if (rows.isEmpty()) {
+            return null;
+        }
+        synchronized (recent) {
+            recent.put(storeKey, rows.get(0));
+        }
+        return rows.get(0);
+    }
+
+    private void remember(String storeKey, StoredResponse stored) {
+        synchronized (recent) {
+            recent.put(storeKey, stored);
+        }
+        try {
+            jdbcTemplate.update(
+                "INSERT INTO idempotency_key (idem_key, request_hash, status_code, response_body, expires_at) VALUES (?, ?, ?, ?, ?)",
+                storeKey, stored.requestHash(), stored.status(), stored.body(), new Timestamp(stored.expiresAt()));
+        } catch (DuplicateKeyException e) {
+            // An expired row that hasn't been purged yet
+            jdbcTemplate.update(
+                "UPDATE idempotency_key SET request_hash = ?, status_code = ?, response_body = ?, expires_at = ? WHERE idem_key = ?",
+                stored.requestHash(), stored.status(), stored.body(), new Timestamp(stored.expiresAt()), storeKey);
+        } catch (Exception e) {
+            // The response still goes out; only replay after a restart is lost
+            System.out.println("IdempotencyStore: Failed to persist key " + storeKey + ": " + e.getMessage());
+        }
+    }
+
+    private void purgeExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            synchronized (recent) {
+                recent.values().removeIf(stored -> stored.expiresAt() <= now);
+            }
+            int purged = jdbcTemplate.update("DELETE FROM idempotency_key WHERE expires_at <= ?", new Timestamp(now));
+            if (purged > 0) {
+                System.out.println("IdempotencyStore: Purged " + purged + " expired keys");
+            }
+        } catch (Exception e) {
+            System.out.println("IdempotencyStore: Error purging expired keys: " + e.getMessage());
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
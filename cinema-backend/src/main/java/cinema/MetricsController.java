@@ -0,0 +1,121 @@
+package cinema;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/metrics")
+@CrossOrigin(origins = "http://localhost:3000")
+public class MetricsController {
+
+    private final SeatHoldManager seatHoldManager;
+    private final SeatEventBroadcaster seatEventBroadcaster;
+    private final EmailOutbox emailOutbox;
+    private final WaitingRoom waitingRoom;
+    private final RateLimitFilter rateLimitFilter;
+    private final PasswordHasher passwordHasher;
+    private final StartupTimings startupTimings;
+    private final MovieDAO movieDAO;
+    private final CatalogCache catalogCache;
+    private final MovieSearchIndex movieSearchIndex;
+    private final MovieSuggester movieSuggester;
+    private final CatalogBytes catalogBytes;
+
+    @Autowired
+    public MetricsController(SeatHoldManager seatHoldManager, SeatEventBroadcaster seatEventBroadcaster, EmailOutbox emailOutbox,
+                             WaitingRoom waitingRoom, RateLimitFilter rateLimitFilter, PasswordHasher passwordHasher,
+                             StartupTimings startupTimings, MovieDAO movieDAO, CatalogCache catalogCache,
+                             MovieSearchIndex movieSearchIndex, MovieSuggester movieSuggester,
+                             CatalogBytes catalogBytes) {
+        this.seatHoldManager = seatHoldManager;
+        this.seatEventBroadcaster = seatEventBroadcaster;
+        this.emailOutbox = emailOutbox;
+        this.waitingRoom = waitingRoom;
+        this.rateLimitFilter = rateLimitFilter;
+        this.passwordHasher = passwordHasher;
+        this.startupTimings = startupTimings;
+        this.movieDAO = movieDAO;
+        this.catalogCache = catalogCache;
+        this.movieSearchIndex = movieSearchIndex;
+        this.movieSuggester = movieSuggester;
+        this.catalogBytes = catalogBytes;
+    }
+
+    // Active seat holds and how fast they are expiring
+    @GetMapping("/holds")
+    public ResponseEntity<Map<String, Object>> getHoldMetrics() {
+        return ResponseEntity.ok(seatHoldManager.getMetrics());
+    }
+
+    // Open seat-change streams
+    @GetMapping("/seat-streams")
+    public ResponseEntity<Map<String, Object>> getSeatStreamMetrics() {
+        return ResponseEntity.ok(Map.of("subscribers", seatEventBroadcaster.getSubscriberCount()));
+    }
+
+    // Outbox rows by status and send results since startup
+    @GetMapping("/email-outbox")
+    public ResponseEntity<Map<String, Object>> getEmailOutboxMetrics() {
+        return ResponseEntity.ok(emailOutbox.getMetrics());
+    }
+
+    // Queue length and admissions per high-demand show
+    @GetMapping("/waiting-room")
+    public ResponseEntity<Map<String, Object>> getWaitingRoomMetrics() {
+        return ResponseEntity.ok(waitingRoom.getMetrics());
+    }
+
+    // Allowed and rejected requests per rate-limit budget
+    @GetMapping("/rate-limits")
+    public ResponseEntity<Map<String, Object>> getRateLimitMetrics() {
+        return ResponseEntity.ok(rateLimitFilter.getMetrics());
+    }
+
+    // Password hashing pool: queue depth, rejections and time spent waiting for a thread
+    @GetMapping("/password-hashing")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingMetrics() {
+        return ResponseEntity.ok(passwordHasher.getMetrics());
+    }
+
+    // Time to ready and how long each startup step took
+    @GetMapping("/startup")
+    public ResponseEntity<Map<String, Object>> getStartupMetrics() {
+        return ResponseEntity.ok(startupTimings.getMetrics());
+    }
+
+    // Queries per catalog list and how long assembling it takes
+    @GetMapping("/catalog")
+    public ResponseEntity<Map<String, Object>> getCatalogMetrics() {
+        return ResponseEntity.ok(movieDAO.getCatalogMetrics());
+    }
+
+    // How often catalog reads hit the cached snapshot and how often it is rebuilt
+    @GetMapping("/catalog-cache")
+    public ResponseEntity<Map<String, Object>> getCatalogCacheMetrics() {
+        return ResponseEntity.ok(catalogCache.getMetrics());
+    }
+
+    // Size of the movie search index and how long searches take
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> getSearchMetrics() {
+        return ResponseEntity.ok(movieSearchIndex.getMetrics());
+    }
+
+    // Size of the typeahead key array and how long lookups take
+    @GetMapping("/suggest")
+    public ResponseEntity<Map<String, Object>> getSuggestMetrics() {
+        return ResponseEntity.ok(movieSuggester.getMetrics());
+    }
+
+    // How often the pre-serialized catalog is re-rendered, its size, and what a render costs
+    @GetMapping("/catalog-bytes")
+    public ResponseEntity<Map<String, Object>> getCatalogBytesMetrics() {
+        return ResponseEntity.ok(catalogBytes.getMetrics());
+    }
+}
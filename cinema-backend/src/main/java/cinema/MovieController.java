@@ -2,10 +2,17 @@ package cinema;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -14,7 +21,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -24,11 +33,26 @@ import org.springframework.web.bind.annotation.RestController;
 public class MovieController {
     private final MovieDAO movieDAO;
     private final JdbcTemplate jdbcTemplate;
+    private final CatalogCache catalogCache;
+    private final MovieSearchIndex movieSearchIndex;
+    private final MovieSuggester movieSuggester;
+    private final ResourceVersions resourceVersions;
+    private final CatalogBytes catalogBytes;
+
+    // The catalog changes whenever a seat sells, so clients always revalidate; a match costs no SQL
+    private static final CacheControl CATALOG_CACHE = CacheControl.noCache().cachePublic();
 
     @Autowired
-    public MovieController(MovieDAO movieDAO, JdbcTemplate jdbcTemplate) {
+    public MovieController(MovieDAO movieDAO, JdbcTemplate jdbcTemplate, CatalogCache catalogCache,
+                           MovieSearchIndex movieSearchIndex, MovieSuggester movieSuggester,
+                           ResourceVersions resourceVersions, CatalogBytes catalogBytes) {
         this.movieDAO = movieDAO;
         this.jdbcTemplate = jdbcTemplate;
+        this.catalogCache = catalogCache;
+        this.movieSearchIndex = movieSearchIndex;
+        this.movieSuggester = movieSuggester;
+        this.resourceVersions = resourceVersions;
+        this.catalogBytes = catalogBytes;
     }
 
     @PostMapping
@@ -53,6 +77,9 @@ public class MovieController {
             
             int movieId = movieDAO.insertMovie(movie);
             movie.setMovieId(movieId);
+            catalogCache.invalidate();
+            movieSearchIndex.add(movie);
+            movieSuggester.add(movie);
             return ResponseEntity.ok(movie);
         } catch (Exception e) {
             e.printStackTrace();
@@ -60,13 +87,64 @@ public class MovieController {
         }
     }
 
+    public static final int DEFAULT_PAGE_SIZE = 24;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // Without paging or filter parameters this is the whole catalog, as before. With any of them
+    // it returns one page: {"movies": [...], "nextCursor": <pass back as after, null on the last page>}.
+    // fields=title,trailer_picture,... returns only those properties of each movie
     @GetMapping
-    public ResponseEntity<List<Movie>> getAllMovies() {
+    public ResponseEntity<?> getAllMovies(@RequestParam(value = "after", required = false) Integer after,
+                                          @RequestParam(value = "limit", required = false) Integer limit,
+                                          @RequestParam(value = "status", required = false) String status,
+                                          @RequestParam(value = "category", required = false) String category,
+                                          @RequestParam(value = "rating", required = false) String rating,
+                                          @RequestParam(value = "fields", required = false) String fields,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         try {
-            System.out.println("MovieController: Fetching all movies");
-            List<Movie> movies = movieDAO.getAllMovies();
-            System.out.println("MovieController: Found " + movies.size() + " movies");
-            return ResponseEntity.ok(movies);
+            Set<String> projection = MovieFields.parse(fields);
+            if (after == null && limit == null && status == null && category == null && rating == null) {
+                CatalogCache.Catalog catalog = catalogCache.getCatalog();
+                String etag = catalogETag(catalog, projection);
+                // The pre-serialized catalog is the one response here that can be sent gzip-coded
+                boolean gzip = projection == null && acceptsGzip(acceptEncoding);
+                ResponseEntity<?> notModified = ResourceVersions.notModified(ifNoneMatch,
+                    gzip ? ResourceVersions.gzipETag(etag) : etag, CATALOG_CACHE);
+                if (notModified != null) {
+                    return notModified;
+                }
+                System.out.println("MovieController: Fetching all movies");
+                if (projection == null) {
+                    // The whole catalog is already serialized for this version
+                    return preSerialized(catalogBytes.get(etag, catalog), gzip);
+                }
+                System.out.println("MovieController: Found " + catalog.movies().size() + " movies");
+                return ResponseEntity.ok().eTag(etag).cacheControl(CATALOG_CACHE).body(project(catalog.movies(), projection));
+            }
+            // Pages are read from the database, so they are tagged by the DAOs' versions
+            String etag = pageETag(projection);
+            ResponseEntity<?> notModified = ResourceVersions.notModified(ifNoneMatch, etag, CATALOG_CACHE);
+            if (notModified != null) {
+                return notModified;
+            }
+            int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().body("limit must be between 1 and " + MAX_PAGE_SIZE);
+            }
+            if (after != null && after < 0) {
+                return ResponseEntity.badRequest().body("after must be a movie ID");
+            }
+            MovieDAO.Page page = movieDAO.getMoviesPage(after, pageSize, status, category, rating, projection);
+            if (projection == null) {
+                return ResponseEntity.ok().eTag(etag).cacheControl(CATALOG_CACHE).body(page);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("movies", project(page.movies(), projection));
+            response.put("nextCursor", page.nextCursor());
+            return ResponseEntity.ok().eTag(etag).cacheControl(CATALOG_CACHE).body(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             System.out.println("MovieController: Error fetching movies: " + e.getMessage());
             e.printStackTrace();
@@ -74,16 +152,63 @@ public class MovieController {
         }
     }
 
+    // Search title, cast, director, producer and category; every word matches as a prefix
+    @GetMapping("/search")
+    public ResponseEntity<?> searchMovies(@RequestParam("q") String query,
+                                          @RequestParam(value = "limit", defaultValue = "" + MovieSearchIndex.DEFAULT_LIMIT) int limit) {
+        if (limit < 1 || limit > MovieSearchIndex.MAX_LIMIT) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + MovieSearchIndex.MAX_LIMIT);
+        }
+        try {
+            return ResponseEntity.ok(movieSearchIndex.search(query, limit));
+        } catch (Exception e) {
+            System.out.println("MovieController: Error searching movies: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error searching movies: " + e.getMessage());
+        }
+    }
+
+    // Typeahead completions for titles, cast and directors, most popular first
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggestMovies(@RequestParam("q") String prefix,
+                                           @RequestParam(value = "limit", defaultValue = "" + MovieSuggester.DEFAULT_LIMIT) int limit) {
+        if (limit < 1 || limit > MovieSuggester.MAX_LIMIT) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + MovieSuggester.MAX_LIMIT);
+        }
+        try {
+            return ResponseEntity.ok(movieSuggester.suggest(prefix, limit));
+        } catch (Exception e) {
+            System.out.println("MovieController: Error suggesting movies: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error suggesting movies: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<?> getMovieById(@PathVariable String id) {
+    public ResponseEntity<?> getMovieById(@PathVariable String id,
+                                          @RequestParam(value = "fields", required = false) String fields,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             System.out.println("MovieController: Received request for movie ID: " + id);
             int movieId = Integer.parseInt(id);
-            Movie movie = movieDAO.getMovieById(movieId);
+            Set<String> projection;
+            try {
+                projection = MovieFields.parse(fields);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+            CatalogCache.Catalog catalog = catalogCache.getCatalog();
+            String etag = catalogETag(catalog, projection);
+            ResponseEntity<?> notModified = ResourceVersions.notModified(ifNoneMatch, etag, CATALOG_CACHE);
+            if (notModified != null) {
+                return notModified;
+            }
+            Movie movie = catalog.byId().get(movieId);
             
             if (movie != null) {
                 System.out.println("MovieController: Successfully found movie: " + movie.getTitle());
-                return ResponseEntity.ok(movie);
+                return ResponseEntity.ok().eTag(etag).cacheControl(CATALOG_CACHE)
+                    .body(projection == null ? movie : MovieFields.project(movie, projection));
             } else {
                 System.out.println("MovieController: No movie found with ID: " + id);
                 return ResponseEntity.notFound().build();
@@ -106,10 +231,10 @@ public class MovieController {
             
             
             try {
-                String deleteQuery = "DELETE FROM movies WHERE movie_id = ?";
-                int rowsAffected = jdbcTemplate.update(deleteQuery, movieId);
-                
-                if (rowsAffected > 0) {
+                if (movieDAO.deleteMovie(movieId)) {
+                    catalogCache.invalidate();
+                    movieSearchIndex.remove(movieId);
+                    movieSuggester.remove(movieId);
                     System.out.println("MovieController: Successfully deleted movie with ID: " + id);
                     return ResponseEntity.ok().build();
                 } else {
@@ -144,6 +269,7 @@ public class MovieController {
             
             // Add the showtime
             movieDAO.addShowTimeForMovie(movieId, showTime);
+            catalogCache.invalidate();
             
             return ResponseEntity.status(HttpStatus.CREATED).build();
         } catch (NumberFormatException e) {
@@ -157,6 +283,54 @@ public class MovieController {
         }
     }
 
+    private ResponseEntity<byte[]> preSerialized(CatalogBytes.Rendered rendered, boolean gzip) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .cacheControl(CATALOG_CACHE)
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.eTag(ResourceVersions.gzipETag(rendered.etag()))
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip").body(rendered.gzip());
+        }
+        return response.eTag(rendered.etag()).body(rendered.json());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    // Seat counts only matter to responses that include show times
+    private String catalogETag(CatalogCache.Catalog catalog, Set<String> projection) {
+        if (MovieFields.includesShowTimes(projection)) {
+            return resourceVersions.etagOf(catalog.generation(), catalog.seatChanges());
+        }
+        return resourceVersions.etagOf(catalog.generation());
+    }
+
+    private String pageETag(Set<String> projection) {
+        if (MovieFields.includesShowTimes(projection)) {
+            return resourceVersions.etag(ResourceVersions.MOVIES, ResourceVersions.SHOW_TIMES, ResourceVersions.SEATS);
+        }
+        return resourceVersions.etag(ResourceVersions.MOVIES);
+    }
+
+    private List<Map<String, Object>> project(List<Movie> movies, Set<String> projection) {
+        List<Map<String, Object>> projected = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            projected.add(MovieFields.project(movie, projection));
+        }
+        return projected;
+    }
+
     private String getStackTraceAsString(Exception e) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
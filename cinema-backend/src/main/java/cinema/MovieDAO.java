@@ -6,7 +6,12 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -16,15 +21,32 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class MovieDAO {
+
+    // One page of a movie listing. nextCursor is the movie ID to continue after, or null on the last page
+    public record Page(List<Movie> movies, Integer nextCursor) {
+    }
+
     private final JdbcTemplate jdbcTemplate;
+    private final SeatCounter seatCounter;
+    private final ResourceVersions resourceVersions;
+    private final StatementCounter statementCounter;
+    private final LongAdder catalogLoads = new LongAdder();
+    private final LongAdder catalogQueries = new LongAdder();
+    private final LongAdder catalogNanos = new LongAdder();
 
     @Autowired
-    public MovieDAO(JdbcTemplate jdbcTemplate) {
+    public MovieDAO(JdbcTemplate jdbcTemplate, SeatCounter seatCounter, ResourceVersions resourceVersions,
+                    StatementCounter statementCounter) {
         this.jdbcTemplate = jdbcTemplate;
+        this.seatCounter = seatCounter;
+        this.resourceVersions = resourceVersions;
+        this.statementCounter = statementCounter;
     }
 
     public List<Movie> getAllMovies() {
         try {
+            long start = System.nanoTime();
+            long statementsBefore = statementCounter.current();
             String query = "SELECT * FROM movies";
             List<Movie> movies = jdbcTemplate.query(query, (rs, rowNum) -> {
                 
@@ -44,15 +66,10 @@ public class MovieDAO {
                 return movie;
             });
 
-            // Only load showtimes for currently running movies
-            for (Movie movie : movies) {
-                if ("Currently Running".equals(movie.getStatus())) {
-                    loadShowTimesForMovie(movie);
-                } else {
-                    movie.setShowTimes(new ArrayList<>()); // Empty list for non-running movies
-                }
-            }
+            // Only load showtimes for currently running movies, all in one query
+            attachShowTimes(movies, "m.status = 'Currently Running'");
 
+            recordCatalogLoad(statementsBefore, start);
             return movies;
         } catch (Exception e) {
             System.out.println("MovieDAO: Error in getAllMovies: " + e.getMessage());
@@ -61,14 +78,59 @@ public class MovieDAO {
         }
     }
     
+    // Movies after the cursor in movie_id order, optionally filtered on status, category and
+    // rating (null means any). Keyset paging: each page is an index range scan, however deep it is.
+    // fields (see MovieFields) limits the columns read; null reads them all
+    public Page getMoviesPage(Integer afterMovieId, int limit, String status, String category, String mpaaRating,
+                              Set<String> fields) {
+        long start = System.nanoTime();
+        long statementsBefore = statementCounter.current();
+        StringBuilder where = new StringBuilder("m.movie_id > ?");
+        List<Object> args = new ArrayList<>();
+        args.add(afterMovieId == null ? 0 : afterMovieId);
+        if (status != null) {
+            where.append(" AND m.status = ?");
+            args.add(status);
+        }
+        if (category != null) {
+            where.append(" AND m.category = ?");
+            args.add(category);
+        }
+        if (mpaaRating != null) {
+            where.append(" AND m.mpaa_rating = ?");
+            args.add(mpaaRating);
+        }
+        // One extra row tells us whether there is another page
+        args.add(limit + 1);
+        List<Movie> movies = jdbcTemplate.query(
+            "SELECT " + MovieFields.columns(fields, "m") + " FROM movies m WHERE " + where + " ORDER BY m.movie_id LIMIT ?",
+            (rs, rowNum) -> fields == null ? mapResultSetToMovie(rs) : MovieFields.map(rs, fields), args.toArray());
+
+        Integer nextCursor = null;
+        if (movies.size() > limit) {
+            movies = new ArrayList<>(movies.subList(0, limit));
+            nextCursor = movies.get(limit - 1).getMovieId();
+        }
+        boolean withShowTimes = !movies.isEmpty() && MovieFields.includesShowTimes(fields);
+        if (withShowTimes) {
+            Object[] ids = movies.stream().map(Movie::getMovieId).toArray();
+            String placeholders = String.join(",", Collections.nCopies(ids.length, "?"));
+            attachShowTimes(movies, "m.movie_id IN (" + placeholders + ") AND m.status = 'Currently Running'", ids);
+        }
+        recordCatalogLoad(statementsBefore, start);
+        return new Page(movies, nextCursor);
+    }
+
     public List<Movie> searchMoviesByTitle(String titleQuery) {
+        long start = System.nanoTime();
+        long statementsBefore = statementCounter.current();
         String query = "SELECT * FROM movies WHERE title LIKE ?";
+        String pattern = "%" + titleQuery + "%";
         
-        return jdbcTemplate.query(query, (rs, rowNum) -> {
-            Movie movie = mapResultSetToMovie(rs);
-            loadShowTimesForMovie(movie);
-            return movie;
-        }, "%" + titleQuery + "%");
+        List<Movie> movies = jdbcTemplate.query(query, (rs, rowNum) -> mapResultSetToMovie(rs), pattern);
+        attachShowTimes(movies, "m.title LIKE ?", pattern);
+        recordCatalogLoad(statementsBefore, start);
+        return movies;
     }
     
     public int insertMovie(Movie movie) throws SQLException {
@@ -112,6 +174,7 @@ public class MovieDAO {
             
             return ps;
         }, keyHolder);
+        resourceVersions.bump(ResourceVersions.MOVIES);
         
         return keyHolder.getKey().intValue();
     }
@@ -122,6 +185,11 @@ public class MovieDAO {
             String deleteMovieQuery = "DELETE FROM movies WHERE movie_id = ?";
             int rowsAffected = jdbcTemplate.update(deleteMovieQuery, movieId);
             System.out.println("MovieDAO: Delete movie query affected " + rowsAffected + " rows");
+            if (rowsAffected > 0) {
+                // Its show times are detached from it as well (ON DELETE SET NULL)
+                resourceVersions.bump(ResourceVersions.MOVIES);
+                resourceVersions.bump(ResourceVersions.SHOW_TIMES);
+            }
             return rowsAffected > 0;
         } catch (Exception e) {
             System.out.println("MovieDAO: Error deleting movie: " + e.getMessage());
@@ -133,16 +201,7 @@ public class MovieDAO {
     private void loadShowTimesForMovie(Movie movie) {
         try {
             String query = "SELECT * FROM show_times WHERE movie_id = ?";
-            List<ShowTime> showTimes = jdbcTemplate.query(query, new Object[]{movie.getMovieId()}, (rs, rowNum) -> {
-                ShowTime st = new ShowTime();
-                st.setShowTimeId(rs.getInt("show_time_id"));
-                st.setMovieId(rs.getInt("movie_id"));
-                st.setShowDate(rs.getDate("show_date"));
-                st.setShowTime(rs.getObject("show_time", LocalTime.class));
-                st.setAvailableSeats(rs.getInt("available_seats"));
-                st.setPrice(rs.getBigDecimal("price"));
-                return st;
-            });
+            List<ShowTime> showTimes = jdbcTemplate.query(query, new Object[]{movie.getMovieId()}, (rs, rowNum) -> mapShowTime(rs));
             
             movie.setShowTimes(showTimes);
         } catch (Exception e) {
@@ -152,6 +211,67 @@ public class MovieDAO {
         }
     }
     
+    // Load the show times of every movie matching the condition (on movies m) in one query and
+    // hand them out by movie_id, instead of one query per movie. Movies without any get an empty list.
+    private void attachShowTimes(List<Movie> movies, String movieCondition, Object... args) {
+        Map<Integer, List<ShowTime>> byMovie = new HashMap<>();
+        if (!movies.isEmpty()) {
+            try {
+                String query = "SELECT st.* FROM show_times st JOIN movies m ON m.movie_id = st.movie_id WHERE " + movieCondition;
+                jdbcTemplate.query(query, rs -> {
+                    ShowTime st = mapShowTime(rs);
+                    byMovie.computeIfAbsent(st.getMovieId(), id -> new ArrayList<>()).add(st);
+                }, args);
+            } catch (Exception e) {
+                System.out.println("MovieDAO: Error loading showtimes: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        for (Movie movie : movies) {
+            movie.setShowTimes(byMovie.getOrDefault(movie.getMovieId(), new ArrayList<>()));
+        }
+    }
+
+    private ShowTime mapShowTime(ResultSet rs) throws SQLException {
+        ShowTime st = new ShowTime();
+        st.setShowTimeId(rs.getInt("show_time_id"));
+        st.setMovieId(rs.getInt("movie_id"));
+        st.setShowDate(rs.getDate("show_date"));
+        st.setShowTime(rs.getObject("show_time", LocalTime.class));
+        st.setAvailableSeats(seatCounter.current(st.getShowTimeId(), rs.getInt("available_seats")));
+        st.setPrice(rs.getBigDecimal("price"));
+        return st;
+    }
+
+    // Tickets sold per movie, used to rank title suggestions
+    public Map<Integer, Long> getTicketCountsByMovie() {
+        Map<Integer, Long> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT st.movie_id, COUNT(*) AS tickets FROM ticket t " +
+                           "JOIN show_times st ON st.show_time_id = t.show_id WHERE NOT t.released GROUP BY st.movie_id",
+            rs -> {
+                counts.put(rs.getInt("movie_id"), rs.getLong("tickets"));
+            });
+        return counts;
+    }
+
+    // Queries and time spent assembling catalog lists, for /api/metrics/catalog
+    public Map<String, Object> getCatalogMetrics() {
+        long loads = catalogLoads.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("catalogLoads", loads);
+        metrics.put("catalogQueries", catalogQueries.sum());
+        metrics.put("queriesPerLoad", loads == 0 ? 0.0 : catalogQueries.sum() / (double) loads);
+        metrics.put("averageLoadMillis", loads == 0 ? 0.0 : catalogNanos.sum() / (double) loads / 1_000_000);
+        return metrics;
+    }
+
+    // Queries are the statements this thread actually ran since the load started
+    private void recordCatalogLoad(long statementsBefore, long startNanos) {
+        catalogLoads.increment();
+        catalogQueries.add(statementCounter.current() - statementsBefore);
+        catalogNanos.add(System.nanoTime() - startNanos);
+    }
+
     private Movie mapResultSetToMovie(ResultSet resultSet) throws SQLException {
         Movie movie = new Movie();
         movie.setMovieId(resultSet.getInt("movie_id"));
@@ -216,6 +336,7 @@ public class MovieDAO {
                 showTime.getAvailableSeats(),
                 showTime.getPrice()
             );
+            resourceVersions.bump(ResourceVersions.SHOW_TIMES);
             
             System.out.println("MovieDAO: Added showtime for movie ID: " + movieId);
         } catch (Exception e) {
@@ -0,0 +1,121 @@
+package cinema;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+// Sparse fieldsets for the movie endpoints (?fields=title,trailer_picture,mpaaRating). Names are
+// the JSON property names of Movie. A projection decides which movie columns are selected and
+// which properties are written out, so list pages skip the long text columns entirely.
+public final class MovieFields {
+
+    public static final String SHOW_TIMES = "showTimes";
+    public static final String UPCOMING_SHOW_TIMES = "upcomingShowTimes";
+
+    // JSON property -> movies column, in the order properties are written
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("movieId", "movie_id");
+        COLUMNS.put("title", "title");
+        COLUMNS.put("category", "category");
+        COLUMNS.put("cast", "cast");
+        COLUMNS.put("director", "director");
+        COLUMNS.put("producer", "producer");
+        COLUMNS.put("synopsis", "synopsis");
+        COLUMNS.put("reviews", "reviews");
+        COLUMNS.put("trailer_picture", "trailer_picture");
+        COLUMNS.put("trailer_video", "trailer_video");
+        COLUMNS.put("mpaaRating", "mpaa_rating");
+        COLUMNS.put("status", "status");
+    }
+
+    private MovieFields() {
+    }
+
+    // The requested fields, always including movieId, or null for all of them.
+    // Throws IllegalArgumentException naming an unknown field
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> parsed = new LinkedHashSet<>();
+        parsed.add("movieId");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!COLUMNS.containsKey(name) && !SHOW_TIMES.equals(name) && !UPCOMING_SHOW_TIMES.equals(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name);
+            }
+            parsed.add(name);
+        }
+        return parsed;
+    }
+
+    public static boolean includesShowTimes(Set<String> fields) {
+        return fields == null || fields.contains(SHOW_TIMES) || fields.contains(UPCOMING_SHOW_TIMES);
+    }
+
+    // Column list for SELECT, qualified with the given table alias
+    public static String columns(Set<String> fields, String alias) {
+        if (fields == null) {
+            return alias + ".*";
+        }
+        StringJoiner columns = new StringJoiner(", ");
+        for (Map.Entry<String, String> entry : COLUMNS.entrySet()) {
+            if (fields.contains(entry.getKey())) {
+                columns.add(alias + "." + entry.getValue());
+            }
+        }
+        return columns.toString();
+    }
+
+    // Map a row selected with columns(fields, ...); properties that weren't selected stay unset
+    public static Movie map(ResultSet rs, Set<String> fields) throws SQLException {
+        Movie movie = new Movie();
+        movie.setMovieId(rs.getInt("movie_id"));
+        if (fields.contains("title")) movie.setTitle(rs.getString("title"));
+        if (fields.contains("category")) movie.setCategory(rs.getString("category"));
+        if (fields.contains("cast")) movie.setCast(rs.getString("cast"));
+        if (fields.contains("director")) movie.setDirector(rs.getString("director"));
+        if (fields.contains("producer")) movie.setProducer(rs.getString("producer"));
+        if (fields.contains("synopsis")) movie.setSynopsis(rs.getString("synopsis"));
+        if (fields.contains("reviews")) movie.setReviews(rs.getString("reviews"));
+        if (fields.contains("trailer_picture")) movie.setTrailer_picture(rs.getString("trailer_picture"));
+        if (fields.contains("trailer_video")) movie.setTrailer_video(rs.getString("trailer_video"));
+        if (fields.contains("mpaaRating")) movie.setMpaaRating(rs.getString("mpaa_rating"));
+        if (fields.contains("status")) movie.setStatus(rs.getString("status"));
+        return movie;
+    }
+
+    // Only the requested properties, for Jackson to write instead of the whole Movie
+    public static Map<String, Object> project(Movie movie, Set<String> fields) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (String field : fields) {
+            projected.put(field, switch (field) {
+                case "movieId" -> movie.getMovieId();
+                case "title" -> movie.getTitle();
+                case "category" -> movie.getCategory();
+                case "cast" -> movie.getCast();
+                case "director" -> movie.getDirector();
+                case "producer" -> movie.getProducer();
+                case "synopsis" -> movie.getSynopsis();
+                case "reviews" -> movie.getReviews();
+                case "trailer_picture" -> movie.getTrailer_picture();
+                case "trailer_video" -> movie.getTrailer_video();
+                case "mpaaRating" -> movie.getMpaaRating();
+                case "status" -> movie.getStatus();
+                case SHOW_TIMES -> movie.getShowTimes();
+                case UPCOMING_SHOW_TIMES -> movie.getUpcomingShowTimes();
+                default -> null;
+            });
+        }
+        return projected;
+    }
+}
@@ -0,0 +1,210 @@
+package cinema;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// In-memory inverted index over movie title, cast, director, producer and category.
+// Terms are kept sorted, so every query word matches as a prefix with one range lookup.
+// A movie must match all query words; it scores the weight of the field each word was
+// found in, doubled for a whole-word match. Results come from the CatalogCache, so a
+// search runs no SQL. The index is built once from the catalog and then kept current as
+// movies are added and deleted.
+@Component
+public class MovieSearchIndex {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private static final int TITLE_WEIGHT = 5;
+    private static final int PEOPLE_WEIGHT = 2;
+    private static final int OTHER_WEIGHT = 1;
+
+    private final CatalogCache catalogCache;
+    // term -> (movie ID -> best field weight the term appears in)
+    private final ConcurrentSkipListMap<String, Map<Integer, Integer>> postings = new ConcurrentSkipListMap<>();
+    // movie ID -> its terms, so a movie can be taken out again
+    private final ConcurrentHashMap<Integer, Set<String>> termsByMovie = new ConcurrentHashMap<>();
+    private volatile boolean built;
+    // Changes made before the first build, replayed after it in case the catalog it read was
+    // loaded before them. A null movie is a removal
+    private final Map<Integer, Movie> changedBeforeBuild = new LinkedHashMap<>();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    @Autowired
+    public MovieSearchIndex(CatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
+    }
+
+    // Index every movie in the catalog from scratch
+    private void rebuild() {
+        postings.clear();
+        termsByMovie.clear();
+        for (Movie movie : catalogCache.getAllMovies()) {
+            addTerms(movie);
+        }
+        for (Map.Entry<Integer, Movie> change : changedBeforeBuild.entrySet()) {
+            removeTerms(change.getKey());
+            if (change.getValue() != null) {
+                addTerms(change.getValue());
+            }
+        }
+        changedBeforeBuild.clear();
+        built = true;
+        System.out.println("MovieSearchIndex: Indexed " + termsByMovie.size() + " movies, " + postings.size() + " terms");
+    }
+
+    // Build on first use if startup hasn't got to it yet
+    public synchronized void ensureBuilt() {
+        if (!built) {
+            rebuild();
+        }
+    }
+
+    // Add a movie, or re-index it if it is already there
+    public synchronized void add(Movie movie) {
+        if (!built) {
+            changedBeforeBuild.remove(movie.getMovieId());
+            changedBeforeBuild.put(movie.getMovieId(), movie);
+            return;
+        }
+        removeTerms(movie.getMovieId());
+        addTerms(movie);
+    }
+
+    public synchronized void remove(int movieId) {
+        if (built) {
+            removeTerms(movieId);
+        } else {
+            changedBeforeBuild.remove(movieId);
+            changedBeforeBuild.put(movieId, null);
+        }
+    }
+
+    // Movies matching every word of the query, best first
+    public List<Movie> search(String query, int limit) {
+        long start = System.nanoTime();
+        if (!built) {
+            ensureBuilt();
+        }
+        List<String> words = tokenize(query);
+        List<Movie> results = new ArrayList<>();
+        if (!words.isEmpty()) {
+            Map<Integer, Integer> scores = null;
+            for (String word : words) {
+                Map<Integer, Integer> wordScores = matchPrefix(word);
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    scores.keySet().retainAll(wordScores.keySet());
+                    for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + wordScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+            for (Integer movieId : scores.keySet()) {
+                Movie movie = catalogCache.getMovie(movieId);
+                if (movie != null) {
+                    results.add(movie);
+                }
+            }
+            Map<Integer, Integer> finalScores = scores;
+            results.sort(Comparator.comparing((Movie movie) -> -finalScores.get(movie.getMovieId()))
+                .thenComparing(movie -> movie.getTitle() == null ? "" : movie.getTitle(), String.CASE_INSENSITIVE_ORDER));
+            if (results.size() > limit) {
+                results = new ArrayList<>(results.subList(0, limit));
+            }
+        }
+        searches.increment();
+        searchNanos.add(System.nanoTime() - start);
+        return results;
+    }
+
+    public Map<String, Object> getMetrics() {
+        long count = searches.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("indexedMovies", termsByMovie.size());
+        metrics.put("terms", postings.size());
+        metrics.put("searches", count);
+        metrics.put("averageSearchMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(searchNanos.sum() / count));
+        return metrics;
+    }
+
+    // Lower-cased words of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // Best score per movie over every term starting with the word
+    private Map<Integer, Integer> matchPrefix(String word) {
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, Integer>> term : postings.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+            int multiplier = term.getKey().equals(word) ? 2 : 1;
+            for (Map.Entry<Integer, Integer> posting : term.getValue().entrySet()) {
+                scores.merge(posting.getKey(), posting.getValue() * multiplier, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private void addTerms(Movie movie) {
+        Map<String, Integer> weights = new HashMap<>();
+        addField(weights, movie.getTitle(), TITLE_WEIGHT);
+        addField(weights, movie.getCast(), PEOPLE_WEIGHT);
+        addField(weights, movie.getDirector(), PEOPLE_WEIGHT);
+        addField(weights, movie.getProducer(), OTHER_WEIGHT);
+        addField(weights, movie.getCategory(), OTHER_WEIGHT);
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new ConcurrentHashMap<>()).put(movie.getMovieId(), entry.getValue());
+        }
+        termsByMovie.put(movie.getMovieId(), new HashSet<>(weights.keySet()));
+    }
+
+    private void addField(Map<String, Integer> weights, String text, int weight) {
+        for (String word : tokenize(text)) {
+            weights.merge(word, weight, Math::max);
+        }
+    }
+
+    private void removeTerms(int movieId) {
+        Set<String> terms = termsByMovie.remove(movieId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Integer, Integer> movies = postings.get(term);
+            if (movies != null) {
+                movies.remove(movieId);
+                if (movies.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+}
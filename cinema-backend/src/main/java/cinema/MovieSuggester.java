@@ -0,0 +1,269 @@
+package cinema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Typeahead completions for movie titles, cast members and directors. Every name is kept
+// under its full text and under each later word ("Tom Hanks" is also found by "han") in
+// one sorted array, so a prefix is a binary search followed by a scan of the matching
+// range. Names are ranked by tickets sold for their movies, which is reloaded
+// periodically. Movie additions and deletions update the names straight away.
+@Component
+public class MovieSuggester {
+
+    public static final int DEFAULT_LIMIT = 8;
+    public static final int MAX_LIMIT = 25;
+
+    // One completion offered to the search box. movieId is set for titles only
+    public record Suggestion(String text, String type, Integer movieId, long popularity) {
+    }
+
+    // The searchable keys, sorted, each pointing at its suggestion
+    private record Snapshot(String[] keys, Suggestion[] targets) {
+    }
+
+    // A distinct name and the movies it belongs to
+    private static class Name {
+        final String text;
+        final String type;
+        final Set<Integer> movieIds = new HashSet<>();
+
+        Name(String text, String type) {
+            this.text = text;
+            this.type = type;
+        }
+    }
+
+    private static final Comparator<Suggestion> RANKING = Comparator.comparingLong(Suggestion::popularity).reversed()
+        .thenComparing(Suggestion::text, String.CASE_INSENSITIVE_ORDER);
+
+    private final CatalogCache catalogCache;
+    private final MovieDAO movieDAO;
+    private final long refreshMinutes;
+    private final Map<String, Name> names = new HashMap<>();
+    private final Map<Integer, List<String>> namesByMovie = new HashMap<>();
+    private Map<Integer, Long> popularity = new HashMap<>();
+    // Changes made before the first build, replayed after it. A null movie is a removal
+    private final Map<Integer, Movie> changedBeforeBuild = new LinkedHashMap<>();
+    private volatile Snapshot snapshot;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "suggest-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+
+    @Autowired
+    public MovieSuggester(CatalogCache catalogCache, MovieDAO movieDAO,
+                          @Value("${catalog.suggest.refresh-minutes:10}") long refreshMinutes) {
+        this.catalogCache = catalogCache;
+        this.movieDAO = movieDAO;
+        this.refreshMinutes = refreshMinutes;
+    }
+
+    @PostConstruct
+    public void start() {
+        refresher.scheduleWithFixedDelay(this::refreshPopularity, refreshMinutes, refreshMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    // Build on first use if startup hasn't got to it yet
+    public synchronized void ensureBuilt() {
+        if (snapshot != null) {
+            return;
+        }
+        popularity = movieDAO.getTicketCountsByMovie();
+        for (Movie movie : catalogCache.getAllMovies()) {
+            addNames(movie);
+        }
+        for (Map.Entry<Integer, Movie> change : changedBeforeBuild.entrySet()) {
+            removeNames(change.getKey());
+            if (change.getValue() != null) {
+                addNames(change.getValue());
+            }
+        }
+        changedBeforeBuild.clear();
+        publish();
+        System.out.println("MovieSuggester: Built " + snapshot.keys().length + " keys for " + names.size() + " names");
+    }
+
+    public synchronized void add(Movie movie) {
+        if (snapshot == null) {
+            changedBeforeBuild.remove(movie.getMovieId());
+            changedBeforeBuild.put(movie.getMovieId(), movie);
+            return;
+        }
+        removeNames(movie.getMovieId());
+        addNames(movie);
+        publish();
+    }
+
+    public synchronized void remove(int movieId) {
+        if (snapshot == null) {
+            changedBeforeBuild.remove(movieId);
+            changedBeforeBuild.put(movieId, null);
+            return;
+        }
+        removeNames(movieId);
+        publish();
+    }
+
+    // The most popular names starting with the prefix, or with a later word starting with it
+    public List<Suggestion> suggest(String prefix, int limit) {
+        long start = System.nanoTime();
+        if (snapshot == null) {
+            ensureBuilt();
+        }
+        Snapshot current = snapshot;
+        String key = normalize(prefix);
+        List<Suggestion> results = new ArrayList<>();
+        if (!key.isEmpty()) {
+            PriorityQueue<Suggestion> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+            Set<Suggestion> seen = new HashSet<>();
+            String[] keys = current.keys();
+            int index = Arrays.binarySearch(keys, key);
+            for (int i = index >= 0 ? index : -index - 1; i < keys.length && keys[i].startsWith(key); i++) {
+                Suggestion suggestion = current.targets()[i];
+                if (seen.add(suggestion)) {
+                    best.add(suggestion);
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            results.addAll(best);
+            results.sort(RANKING);
+        }
+        lookups.increment();
+        lookupNanos.add(System.nanoTime() - start);
+        return results;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Snapshot current = snapshot;
+        long count = lookups.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("keys", current == null ? 0 : current.keys().length);
+        metrics.put("lookups", count);
+        metrics.put("averageLookupMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(lookupNanos.sum() / count));
+        return metrics;
+    }
+
+    private void refreshPopularity() {
+        try {
+            Map<Integer, Long> counts = movieDAO.getTicketCountsByMovie();
+            synchronized (this) {
+                if (snapshot != null) {
+                    popularity = counts;
+                    publish();
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("MovieSuggester: Error refreshing popularity: " + e.getMessage());
+        }
+    }
+
+    private void addNames(Movie movie) {
+        List<String> ids = new ArrayList<>();
+        addName(ids, movie, movie.getTitle(), "title");
+        if (movie.getCast() != null) {
+            for (String member : movie.getCast().split(",")) {
+                addName(ids, movie, member, "cast");
+            }
+        }
+        addName(ids, movie, movie.getDirector(), "director");
+        namesByMovie.put(movie.getMovieId(), ids);
+    }
+
+    private void addName(List<String> ids, Movie movie, String text, String type) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String trimmed = text.trim();
+        // Titles stay one per movie; a person is one name across all their movies
+        String id = type.equals("title") ? "title|" + movie.getMovieId() : type + "|" + normalize(trimmed);
+        names.computeIfAbsent(id, k -> new Name(trimmed, type)).movieIds.add(movie.getMovieId());
+        ids.add(id);
+    }
+
+    private void removeNames(int movieId) {
+        List<String> ids = namesByMovie.remove(movieId);
+        if (ids == null) {
+            return;
+        }
+        for (String id : ids) {
+            Name name = names.get(id);
+            if (name != null) {
+                name.movieIds.remove(movieId);
+                if (name.movieIds.isEmpty()) {
+                    names.remove(id);
+                }
+            }
+        }
+    }
+
+    // Lay the current names out as a new sorted array; readers keep the old one until it is swapped in
+    private void publish() {
+        List<Map.Entry<String, Suggestion>> entries = new ArrayList<>();
+        for (Name name : names.values()) {
+            long score = 0;
+            for (Integer movieId : name.movieIds) {
+                score += popularity.getOrDefault(movieId, 0L);
+            }
+            Integer movieId = name.type.equals("title") ? name.movieIds.iterator().next() : null;
+            Suggestion suggestion = new Suggestion(name.text, name.type, movieId, score);
+            for (String key : keysFor(name.text)) {
+                entries.add(Map.entry(key, suggestion));
+            }
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        String[] keys = new String[entries.size()];
+        Suggestion[] targets = new Suggestion[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            keys[i] = entries.get(i).getKey();
+            targets[i] = entries.get(i).getValue();
+        }
+        snapshot = new Snapshot(keys, targets);
+    }
+
+    // The full text plus the text from each later word on
+    private static Set<String> keysFor(String text) {
+        String normalized = normalize(text);
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            keys.add(normalized.substring(i + 1));
+        }
+        return keys;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,135 @@
+package cinema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+// Runs BCrypt on a fixed pool sized to the CPU count instead of on request threads.
+// The queue is bounded: when it is full the caller gets HashingBusyException at once
+// instead of piling up behind other logins, so password work can only ever hold a
+// handful of servlet threads. Records how long work waits in the queue.
+@Component
+public class PasswordHasher {
+
+    private final BCryptPasswordEncoder encoder;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor pool;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalQueueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    @Autowired
+    public PasswordHasher(BCryptPasswordEncoder encoder,
+                          @Value("${password-hashing.threads:0}") int threads,
+                          @Value("${password-hashing.queue-size:32}") int queueSize,
+                          @Value("${password-hashing.timeout-millis:5000}") long timeoutMillis) {
+        this.encoder = encoder;
+        this.timeoutMillis = timeoutMillis;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize), r -> {
+                Thread thread = new Thread(r, "password-hash");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    public String encode(String raw) {
+        return await(submit(() -> encoder.encode(raw)));
+    }
+
+    // Hash several values at once, e.g. a card's number and CVV; results are in argument order
+    public List<String> encodeAll(String... raws) {
+        List<Future<String>> futures = new ArrayList<>(raws.length);
+        for (String raw : raws) {
+            futures.add(submit(() -> encoder.encode(raw)));
+        }
+        List<String> hashes = new ArrayList<>(raws.length);
+        for (Future<String> future : futures) {
+            hashes.add(await(future));
+        }
+        return hashes;
+    }
+
+    public boolean matches(String raw, String hash) {
+        return await(submit(() -> encoder.matches(raw, hash)));
+    }
+
+    public Map<String, Object> getMetrics() {
+        long done = completed.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("threads", pool.getMaximumPoolSize());
+        metrics.put("busyThreads", pool.getActiveCount());
+        metrics.put("queued", pool.getQueue().size());
+        metrics.put("queueCapacity", pool.getQueue().size() + pool.getQueue().remainingCapacity());
+        metrics.put("completed", done);
+        metrics.put("rejected", rejected.sum());
+        metrics.put("averageQueueWaitMillis", done == 0 ? 0.0 : totalQueueWaitNanos.sum() / (double) done / 1_000_000);
+        metrics.put("maxQueueWaitMillis", maxQueueWaitNanos.get() / 1_000_000.0);
+        return metrics;
+    }
+
+    private <T> Future<T> submit(Callable<T> work) {
+        long queuedAt = System.nanoTime();
+        try {
+            return pool.submit(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                totalQueueWaitNanos.add(waited);
+                maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+                try {
+                    return work.call();
+                } finally {
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new HashingBusyException("Password hashing is at capacity, please try again shortly.");
+        }
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HashingBusyException("Password hashing timed out, please try again shortly.");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -15,11 +17,19 @@ public class PromotionController {
 
     private final PromotionDAO promotionDAO;
     private final UserDAO userDAO;
+    private final PromotionDispatcher promotionDispatcher;
+    private final ResourceVersions resourceVersions;
+
+    // Admin data: browsers may keep it but shared caches may not, and it is always revalidated
+    private static final CacheControl PROMOTIONS_CACHE = CacheControl.noCache().cachePrivate();
 
     @Autowired
-    public PromotionController(PromotionDAO promotionDAO, UserDAO userDAO) {
+    public PromotionController(PromotionDAO promotionDAO, UserDAO userDAO, PromotionDispatcher promotionDispatcher,
+                               ResourceVersions resourceVersions) {
         this.promotionDAO = promotionDAO;
         this.userDAO = userDAO;
+        this.promotionDispatcher = promotionDispatcher;
+        this.resourceVersions = resourceVersions;
     }
 
     // Admin endpoint to create a new promotion
@@ -50,10 +60,16 @@ public class PromotionController {
     
     // Admin endpoint to get all promotions
     @GetMapping("/admin/all")
-    public ResponseEntity<?> getAllPromotions() {
+    public ResponseEntity<?> getAllPromotions(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String etag = resourceVersions.etag(ResourceVersions.PROMOTIONS);
+            ResponseEntity<?> notModified = ResourceVersions.notModified(ifNoneMatch, etag, PROMOTIONS_CACHE);
+            if (notModified != null) {
+                return notModified;
+            }
             List<Promotion> promotions = promotionDAO.getAllPromotions();
-            return ResponseEntity.ok(promotions);
+            return ResponseEntity.ok().eTag(etag).cacheControl(PROMOTIONS_CACHE).body(promotions);
         } catch (Exception e) {
             System.out.println("PromotionController: Error fetching promotions: " + e.getMessage());
             e.printStackTrace();
@@ -66,10 +82,11 @@ public class PromotionController {
     @PostMapping("/admin/send/{id}")
     public ResponseEntity<?> sendPromotionToUsers(@PathVariable int id) {
         try {
-            boolean sent = promotionDAO.sendPromotionToSubscribers(id);
+            boolean started = promotionDispatcher.start(id);
             
-            if (sent) {
-                return ResponseEntity.ok(Map.of("message", "Promotion successfully sent to all subscribed users"));
+            if (started) {
+                return ResponseEntity.ok(Map.of("message", "Promotion is being sent to all subscribed users",
+                    "progress", "/api/promotions/admin/" + id + "/progress"));
             } else {
                 return ResponseEntity.badRequest().body(Map.of("error", "Failed to send promotion. It may not exist, already been sent, or there are no subscribed users."));
             }
@@ -81,6 +98,24 @@ public class PromotionController {
         }
     }
     
+    // Admin endpoint to follow the sending of a promotion
+    @GetMapping("/admin/{id}/progress")
+    public ResponseEntity<?> getSendProgress(@PathVariable int id) {
+        try {
+            Map<String, Object> progress = promotionDispatcher.getProgress(id);
+            if (progress == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Promotion " + id + " has not been sent"));
+            }
+            return ResponseEntity.ok(progress);
+        } catch (Exception e) {
+            System.out.println("PromotionController: Error fetching send progress: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to fetch send progress: " + e.getMessage()));
+        }
+    }
+    
     // Admin endpoint to delete a promotion
     @DeleteMapping("/admin/delete/{id}")
     public ResponseEntity<?> deletePromotion(@PathVariable int id) {
@@ -16,14 +16,12 @@ import org.springframework.stereotype.Repository;
 public class PromotionDAO {
 
     private final JdbcTemplate jdbcTemplate;
-    private final UserDAO userDAO;
-    private final EmailService emailService;
+    private final ResourceVersions resourceVersions;
 
     @Autowired
-    public PromotionDAO(JdbcTemplate jdbcTemplate, UserDAO userDAO, EmailService emailService) {
+    public PromotionDAO(JdbcTemplate jdbcTemplate, ResourceVersions resourceVersions) {
         this.jdbcTemplate = jdbcTemplate;
-        this.userDAO = userDAO;
-        this.emailService = emailService;
+        this.resourceVersions = resourceVersions;
     }
     
     // Get all promotions (for admin)
@@ -66,6 +64,7 @@ public class PromotionDAO {
                 ps.setBoolean(5, promotion.isSent());
                 return ps;
             }, keyHolder);
+            resourceVersions.bump(ResourceVersions.PROMOTIONS);
             
             return keyHolder.getKey().intValue();
         } catch (Exception e) {
@@ -136,6 +135,7 @@ public class PromotionDAO {
             int rowsAffected = jdbcTemplate.update(sql, promotionId);
             
             if (rowsAffected > 0) {
+                resourceVersions.bump(ResourceVersions.PROMOTIONS);
                 System.out.println("PromotionDAO: Successfully deleted promotion with ID: " + promotionId);
                 return true;
             } else {
@@ -148,58 +148,4 @@ public class PromotionDAO {
             return false;
         }
     }
-    
-    // Send promotion to all subscribed users
-    public boolean sendPromotionToSubscribers(int promotionId) {
-        try {
-
-            Promotion promotion = getPromotionById(promotionId);
-            if (promotion == null) {
-                System.out.println("PromotionDAO: Promotion not found with ID: " + promotionId);
-                return false;
-            }
-            
-            if (promotion.isSent()) {
-                System.out.println("PromotionDAO: Promotion already sent, ID: " + promotionId);
-                return false;
-            }
-            
-            // Get all users who have subscribed to promotions
-            List<User> subscribedUsers = userDAO.getSubscribedUsers();
-            if (subscribedUsers.isEmpty()) {
-                System.out.println("PromotionDAO: No users subscribed to promotions");
-                return false;
-            }
-            
-            System.out.println("PromotionDAO: Starting to send promotion to " + subscribedUsers.size() + " users");
-            
-            // Extract just the email addresses from the users
-            List<String> emailAddresses = subscribedUsers.stream()
-                .map(User::getEmail)
-                .collect(java.util.stream.Collectors.toList());
-            
-            // Mark the promotion as sent
-            String updateSql = "UPDATE promotion SET is_sent = TRUE WHERE promotion_id = ?";
-            jdbcTemplate.update(updateSql, promotionId);
-            
-            // Send bulk email in separate thread
-            new Thread(() -> {
-                try {
-                    // Send one email with all recipients as BCC
-                    emailService.sendPromotionEmailBulk(emailAddresses, promotion);
-                    System.out.println("PromotionDAO: Completed sending bulk promotion email to " + emailAddresses.size() + " users");
-                } catch (Exception e) {
-                    System.out.println("PromotionDAO: Error in email sending thread: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }).start();
-            
-            // Return true immediately since we've started the process
-            return true;
-        } catch (Exception e) {
-            System.out.println("PromotionDAO: Error sending promotion: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,254 @@
+package cinema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+// Sends a promotion to every subscriber. Subscribers are read a chunk at a time in user_id
+// order with a keyset query, and each chunk is mailed after its query has finished, one
+// message per recipient over one SMTP connection, so no connection or read view is held
+// while mail goes out. A token bucket caps the overall send rate.
+// After every chunk the last user_id is saved in promotion_dispatch, so a restart
+// resumes where it stopped instead of mailing everyone again.
+@Component
+public class PromotionDispatcher {
+
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+    private static final long RETRY_BASE_MILLIS = 5000;
+
+    private record Recipient(int userId, String email) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PromotionDAO promotionDAO;
+    private final ResourceVersions resourceVersions;
+    private final EmailService emailService;
+    private final int chunkSize;
+    private final TokenBucket sendRate;
+    private final ExecutorService runners;
+    private final Set<Integer> running = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public PromotionDispatcher(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                               PromotionDAO promotionDAO, EmailService emailService, ResourceVersions resourceVersions,
+                               @Value("${promotions.chunk-size:50}") int chunkSize,
+                               @Value("${promotions.send-rate-per-second:10}") double sendRatePerSecond,
+                               @Value("${promotions.dispatch-threads:2}") int dispatchThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.promotionDAO = promotionDAO;
+        this.resourceVersions = resourceVersions;
+        this.emailService = emailService;
+        this.chunkSize = chunkSize;
+        this.sendRate = new TokenBucket(Math.max(chunkSize, sendRatePerSecond), sendRatePerSecond);
+        this.runners = Executors.newFixedThreadPool(dispatchThreads, r -> {
+            Thread thread = new Thread(r, "promotion-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        runners.shutdownNow();
+    }
+
+    // Start sending a promotion, or resume one whose dispatch failed. Returns false if the
+    // promotion doesn't exist, was already sent, or there is nobody to send it to.
+    public boolean start(int promotionId) {
+        Promotion promotion = promotionDAO.getPromotionById(promotionId);
+        if (promotion == null) {
+            System.out.println("PromotionDispatcher: Promotion not found with ID: " + promotionId);
+            return false;
+        }
+
+        List<String> dispatchStatus = jdbcTemplate.query("SELECT status FROM promotion_dispatch WHERE promotion_id = ?",
+            (rs, rowNum) -> rs.getString("status"), promotionId);
+        if (!dispatchStatus.isEmpty()) {
+            if (!"failed".equals(dispatchStatus.get(0))) {
+                System.out.println("PromotionDispatcher: Promotion already sent, ID: " + promotionId);
+                return false;
+            }
+            jdbcTemplate.update("UPDATE promotion_dispatch SET status = 'running', last_error = NULL WHERE promotion_id = ?", promotionId);
+            submit(promotion);
+            return true;
+        }
+
+        Integer subscribers = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user WHERE promotion_subscription = TRUE", Integer.class);
+        if (subscribers == null || subscribers == 0) {
+            System.out.println("PromotionDispatcher: No users subscribed to promotions");
+            return false;
+        }
+
+        Boolean claimed = transactionTemplate.execute(status -> {
+            // Only one caller gets to flip is_sent, so a promotion is never dispatched twice
+            if (jdbcTemplate.update("UPDATE promotion SET is_sent = TRUE WHERE promotion_id = ? AND is_sent = FALSE", promotionId) == 0) {
+                return false;
+            }
+            jdbcTemplate.update("INSERT INTO promotion_dispatch (promotion_id, status, total_recipients) VALUES (?, 'running', ?)",
+                promotionId, subscribers);
+            return true;
+        });
+        if (Boolean.TRUE.equals(claimed)) {
+            resourceVersions.bump(ResourceVersions.PROMOTIONS);
+        }
+        if (!Boolean.TRUE.equals(claimed)) {
+            System.out.println("PromotionDispatcher: Promotion already sent, ID: " + promotionId);
+            return false;
+        }
+
+        System.out.println("PromotionDispatcher: Starting to send promotion " + promotionId + " to " + subscribers + " users");
+        submit(promotion);
+        return true;
+    }
+
+    // Pick up dispatches that were running when the server stopped
+    public int resumeUnfinished() {
+        List<Integer> unfinished = jdbcTemplate.query("SELECT promotion_id FROM promotion_dispatch WHERE status = 'running'",
+            (rs, rowNum) -> rs.getInt("promotion_id"));
+        for (int promotionId : unfinished) {
+            Promotion promotion = promotionDAO.getPromotionById(promotionId);
+            if (promotion != null) {
+                System.out.println("PromotionDispatcher: Resuming promotion " + promotionId);
+                submit(promotion);
+            }
+        }
+        return unfinished.size();
+    }
+
+    // Progress of a promotion's dispatch, or null if it was never dispatched
+    public Map<String, Object> getProgress(int promotionId) {
+        List<Map<String, Object>> rows = jdbcTemplate.query(
+            "SELECT * FROM promotion_dispatch WHERE promotion_id = ?",
+            (rs, rowNum) -> {
+                int total = rs.getInt("total_recipients");
+                int sent = rs.getInt("sent_recipients");
+                int failed = rs.getInt("failed_recipients");
+                Map<String, Object> progress = new HashMap<>();
+                progress.put("promotionId", promotionId);
+                progress.put("status", rs.getString("status"));
+                progress.put("totalRecipients", total);
+                progress.put("sentRecipients", sent);
+                progress.put("failedRecipients", failed);
+                progress.put("chunksSent", rs.getInt("chunks_sent"));
+                progress.put("percentComplete", total == 0 ? 100.0 : Math.min(100.0, 100.0 * (sent + failed) / total));
+                progress.put("lastError", rs.getString("last_error"));
+                progress.put("startedAt", rs.getTimestamp("started_at"));
+                progress.put("updatedAt", rs.getTimestamp("updated_at"));
+                progress.put("completedAt", rs.getTimestamp("completed_at"));
+                return progress;
+            },
+            promotionId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private void submit(Promotion promotion) {
+        if (!running.add(promotion.getPromotionId())) {
+            return;
+        }
+        runners.execute(() -> {
+            try {
+                run(promotion);
+            } finally {
+                running.remove(promotion.getPromotionId());
+            }
+        });
+    }
+
+    private void run(Promotion promotion) {
+        int promotionId = promotion.getPromotionId();
+        try {
+            Integer lastUserId = jdbcTemplate.queryForObject("SELECT last_user_id FROM promotion_dispatch WHERE promotion_id = ?",
+                Integer.class, promotionId);
+
+            int after = lastUserId == null ? 0 : lastUserId;
+            while (true) {
+                List<Recipient> chunk = jdbcTemplate.query(
+                    "SELECT user_id, email FROM user WHERE promotion_subscription = TRUE AND user_id > ? ORDER BY user_id LIMIT ?",
+                    (rs, rowNum) -> new Recipient(rs.getInt("user_id"), rs.getString("email")),
+                    after, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                sendChunk(promotion, chunk);
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+                after = chunk.get(chunk.size() - 1).userId();
+            }
+
+            jdbcTemplate.update("UPDATE promotion_dispatch SET status = 'completed', completed_at = NOW() WHERE promotion_id = ?", promotionId);
+            System.out.println("PromotionDispatcher: Completed sending promotion " + promotionId);
+        } catch (Exception e) {
+            String error = String.valueOf(e.getMessage());
+            System.out.println("PromotionDispatcher: Error sending promotion " + promotionId + ": " + error);
+            e.printStackTrace();
+            // Left as 'running' on shutdown so it resumes on the next start
+            if (!Thread.currentThread().isInterrupted()) {
+                jdbcTemplate.update("UPDATE promotion_dispatch SET status = 'failed', last_error = ? WHERE promotion_id = ?",
+                    error.length() > 500 ? error.substring(0, 500) : error, promotionId);
+            }
+        }
+    }
+
+    // Send one chunk and record it. A chunk that couldn't be sent at all (mail server down) is retried
+    // with backoff. Refused or malformed addresses only fail their own message: they are counted and
+    // logged, and the dispatch moves on past them
+    private void sendChunk(Promotion promotion, List<Recipient> chunk) {
+        try {
+            sendRate.acquire(chunk.size());
+
+            List<SimpleMailMessage> messages = new ArrayList<>(chunk.size());
+            for (Recipient recipient : chunk) {
+                messages.add(emailService.buildPromotionEmail(recipient.email(), promotion));
+            }
+
+            Map<SimpleMailMessage, Exception> failed = emailService.sendBatch(messages);
+            for (int attempt = 1; serverFailed(failed, messages) && attempt < MAX_CHUNK_ATTEMPTS; attempt++) {
+                TimeUnit.MILLISECONDS.sleep(RETRY_BASE_MILLIS << (attempt - 1));
+                failed = emailService.sendBatch(messages);
+            }
+            if (serverFailed(failed, messages)) {
+                throw new IllegalStateException("Mail server rejected the whole chunk: "
+                    + failed.values().iterator().next().getMessage());
+            }
+            for (Map.Entry<SimpleMailMessage, Exception> failure : failed.entrySet()) {
+                System.out.println("PromotionDispatcher: Promotion " + promotion.getPromotionId() + " not sent to "
+                    + String.join(", ", failure.getKey().getTo()) + ": " + failure.getValue().getMessage());
+            }
+
+            jdbcTemplate.update("""
+                UPDATE promotion_dispatch
+                SET last_user_id = ?, chunks_sent = chunks_sent + 1,
+                    sent_recipients = sent_recipients + ?, failed_recipients = failed_recipients + ?
+                WHERE promotion_id = ?
+                """,
+                chunk.get(chunk.size() - 1).userId(), messages.size() - failed.size(), failed.size(), promotion.getPromotionId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Promotion dispatch interrupted", e);
+        }
+    }
+
+    // Nothing in the chunk went out, and not just because of the addresses
+    private static boolean serverFailed(Map<SimpleMailMessage, Exception> failed, List<SimpleMailMessage> messages) {
+        return failed.size() == messages.size()
+            && failed.values().stream().anyMatch(failure -> !EmailService.isRecipientFailure(failure));
+    }
+}
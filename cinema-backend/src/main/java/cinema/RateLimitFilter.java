@@ -0,0 +1,206 @@
+package cinema;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Throttles expensive endpoints before they reach a controller. Every request on a limited
+// route spends a token from its client's bucket for that route group: one bucket per IP and,
+// when the request carries a valid session token, one per customer as well.
+// Login and signup (BCrypt, SMTP) get the smallest budget. Over budget means 429 with Retry-After.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String ALLOWED_ORIGIN = "http://localhost:3000";
+    private static final long IDLE_EVICT_MINUTES = 10;
+
+    // A route group with its own budget
+    private static final class Policy {
+        private final String name;
+        private final double capacity;
+        private final double refillPerSecond;
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private Policy(String name, double capacity, double refillPerSecond) {
+            this.name = name;
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+
+    private static final class Entry {
+        private final TokenBucket bucket;
+        private volatile long lastUsed = System.nanoTime();
+
+        private Entry(Policy policy) {
+            this.bucket = new TokenBucket(policy.capacity, policy.refillPerSecond);
+        }
+    }
+
+    private final SessionTokens sessionTokens;
+    private final boolean enabled;
+    private final Policy auth;
+    private final Policy booking;
+    private final Policy catalog;
+    // ConcurrentHashMap locks per bin, so clients hitting different buckets don't contend
+    private final ConcurrentHashMap<String, Entry> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rate-limit-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public RateLimitFilter(SessionTokens sessionTokens,
+                           @Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.auth.capacity:10}") double authCapacity,
+                           @Value("${rate-limit.auth.per-minute:10}") double authPerMinute,
+                           @Value("${rate-limit.booking.capacity:30}") double bookingCapacity,
+                           @Value("${rate-limit.booking.per-minute:60}") double bookingPerMinute,
+                           @Value("${rate-limit.catalog.capacity:120}") double catalogCapacity,
+                           @Value("${rate-limit.catalog.per-minute:1200}") double catalogPerMinute) {
+        this.sessionTokens = sessionTokens;
+        this.enabled = enabled;
+        this.auth = new Policy("auth", authCapacity, authPerMinute / 60);
+        this.booking = new Policy("booking", bookingCapacity, bookingPerMinute / 60);
+        this.catalog = new Policy("catalog", catalogCapacity, catalogPerMinute / 60);
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        for (Policy policy : new Policy[]{auth, booking, catalog}) {
+            Map<String, Object> counts = new HashMap<>();
+            counts.put("allowed", policy.allowed.sum());
+            counts.put("rejected", policy.rejected.sum());
+            counts.put("capacity", policy.capacity);
+            counts.put("refillPerSecond", policy.refillPerSecond);
+            metrics.put(policy.name, counts);
+        }
+        metrics.put("trackedClients", buckets.size());
+        metrics.put("enabled", enabled);
+        return metrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Policy policy = enabled ? policyFor(request) : null;
+        if (policy == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String address = clientAddress(request);
+        long waitNanos = spend(policy, "ip:" + address);
+        SessionTokens.Session session = waitNanos == 0 ? sessionTokens.resolve(request.getHeader(HttpHeaders.AUTHORIZATION)) : null;
+        if (session != null) {
+            waitNanos = spend(policy, "customer:" + session.userId());
+        }
+        if (waitNanos == 0) {
+            policy.allowed.increment();
+            chain.doFilter(request, response);
+            return;
+        }
+
+        policy.rejected.increment();
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        String origin = request.getHeader(HttpHeaders.ORIGIN);
+        if (ALLOWED_ORIGIN.equals(origin)) {
+            // Sent before Spring's CORS handling runs, so the browser needs these to read the 429
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, origin);
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.RETRY_AFTER);
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType("application/json");
+        response.getWriter().write("{\"error\":\"Too many requests, please try again later.\",\"retryAfterSeconds\":" + retryAfter + "}");
+    }
+
+    // Which budget a request spends from, or null if it isn't limited
+    private Policy policyFor(HttpServletRequest request) {
+        String method = request.getMethod();
+        if ("OPTIONS".equals(method)) {
+            return null;
+        }
+        String path = request.getRequestURI();
+        if (path.startsWith("/api/users/")) {
+            boolean credentialCall = path.endsWith("/login") || path.endsWith("/signup") || path.endsWith("/verify")
+                || path.endsWith("/forgot-password") || path.endsWith("/reset-password") || path.endsWith("/change-password")
+                || path.endsWith("/password");
+            return credentialCall && !"GET".equals(method) ? auth : null;
+        }
+        if (path.startsWith("/api/bookings") || path.startsWith("/api/tickets") || path.startsWith("/api/checkout")
+            || path.startsWith("/api/waiting-room/shows")) {
+            return "GET".equals(method) ? catalog : booking;
+        }
+        if (path.startsWith("/api/movies") || path.startsWith("/api/showtimes") || path.startsWith("/api/showrooms")) {
+            return catalog;
+        }
+        return null;
+    }
+
+    // Take a token from the client's bucket; returns 0 if allowed, else nanoseconds until a token is due
+    private long spend(Policy policy, String client) {
+        Entry entry = buckets.computeIfAbsent(policy.name + "|" + client, key -> new Entry(policy));
+        entry.lastUsed = System.nanoTime();
+        return entry.bucket.tryAcquire(1) ? 0 : Math.max(1, entry.bucket.nanosUntilAvailable(1));
+    }
+
+    // The caller's address. Requests proxied by the Next.js server arrive from loopback, so there the
+    // forwarded address is used: its last entry, the one added by the proxy in front of Next.js.
+    // Earlier entries are whatever the client sent and are never trusted. Loopback calls without
+    // one (local development, tools on the server) share the loopback address's bucket.
+    private String clientAddress(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        boolean loopback = "127.0.0.1".equals(remote) || "0:0:0:0:0:0:0:1".equals(remote) || "::1".equals(remote);
+        if (!loopback) {
+            return remote;
+        }
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded == null || forwarded.isBlank()) {
+            return remote;
+        }
+        String last = forwarded.substring(forwarded.lastIndexOf(',') + 1).trim();
+        return last.isEmpty() ? remote : last;
+    }
+
+    // Buckets untouched for a while are full again anyway; dropping them keeps the map small
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - TimeUnit.MINUTES.toNanos(IDLE_EVICT_MINUTES);
+        buckets.values().removeIf(entry -> entry.lastUsed - cutoff < 0);
+    }
+}
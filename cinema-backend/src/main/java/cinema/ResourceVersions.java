@@ -0,0 +1,109 @@
+package cinema;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+// Version counters for the read endpoints' data, used as strong ETags. Every DAO write to a
+// resource bumps its counter, so a conditional GET is answered by comparing counters, with no
+// SQL and no hashing of the response. The ETag also carries a per-process epoch: counters
+// start again at zero after a restart, and tags from before it must not match.
+@Component
+public class ResourceVersions implements SeatChangeListener {
+
+    public static final String MOVIES = "movies";
+    public static final String SHOW_TIMES = "showtimes";
+    public static final String SEATS = "seats";
+    public static final String SHOWROOMS = "showrooms";
+    public static final String PROMOTIONS = "promotions";
+
+    // Marks the tag of a gzip-coded body: a strong tag has to differ between content codings
+    private static final String GZIP_SUFFIX = "-gzip";
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public void bump(String resource) {
+        versions.computeIfAbsent(resource, r -> new AtomicLong()).incrementAndGet();
+    }
+
+    public long version(String resource) {
+        AtomicLong version = versions.get(resource);
+        return version == null ? 0 : version.get();
+    }
+
+    // Strong ETag over the given resources, for data read straight from the database. DAOs bump
+    // after their write, so a tag taken before the read can only fall behind the body, which costs
+    // the client one more full download. Data served from CatalogCache is tagged with etagOf instead
+    public String etag(String... resources) {
+        long[] current = new long[resources.length];
+        for (int i = 0; i < resources.length; i++) {
+            current[i] = version(resources[i]);
+        }
+        return etagOf(current);
+    }
+
+    // Strong ETag over versions kept elsewhere, such as the catalog cache's generation
+    public String etagOf(long... versions) {
+        StringBuilder tag = new StringBuilder("\"").append(epoch);
+        for (long version : versions) {
+            tag.append('-').append(version);
+        }
+        return tag.append('"').toString();
+    }
+
+    // The tag for the same data sent gzip-coded
+    public static String gzipETag(String etag) {
+        return etag.substring(0, etag.length() - 1) + GZIP_SUFFIX + "\"";
+    }
+
+    // Does an If-None-Match header (a list of tags, or *) match the current tag? The plain and gzip
+    // tags of the same data match each other, so a client gets its 304 whichever coding it cached
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match compares weakly
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || withoutCoding(tag).equals(withoutCoding(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String withoutCoding(String etag) {
+        return etag.endsWith(GZIP_SUFFIX + "\"")
+            ? etag.substring(0, etag.length() - GZIP_SUFFIX.length() - 1) + "\""
+            : etag;
+    }
+
+    // 304 for a matching If-None-Match, or null to go on and build the full response
+    public static <T> ResponseEntity<T> notModified(String ifNoneMatch, String etag, CacheControl cacheControl) {
+        if (!matches(ifNoneMatch, etag)) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+    }
+
+    // Seat sales change the available seats shown with every show time
+    @Override
+    public void seatTaken(int showId, String seatNumber) {
+        bump(SEATS);
+    }
+
+    @Override
+    public void seatReleased(int showId, String seatNumber) {
+        bump(SEATS);
+    }
+}
@@ -0,0 +1,9 @@
+package cinema;
+
+// Notified after a ticket change for a show has been committed to the database
+public interface SeatChangeListener {
+
+    void seatTaken(int showId, String seatNumber);
+
+    void seatReleased(int showId, String seatNumber);
+}
@@ -0,0 +1,106 @@
+package cinema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Keeps show_times.available_seats current. Ticket sales and releases are absorbed by
+// per-show LongAdders and written to MySQL in one batch every flush interval.
+@Component
+public class SeatCounter implements SeatChangeListener {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long flushMillis;
+    private final ConcurrentHashMap<Integer, LongAdder> pendingDeltas = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "seat-counter-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public SeatCounter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                       @Value("${seats.counter.flush-millis:2000}") long flushMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.flushMillis = flushMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        flush();
+    }
+
+    @Override
+    public void seatTaken(int showId, String seatNumber) {
+        pendingDeltas.computeIfAbsent(showId, id -> new LongAdder()).decrement();
+    }
+
+    @Override
+    public void seatReleased(int showId, String seatNumber) {
+        pendingDeltas.computeIfAbsent(showId, id -> new LongAdder()).increment();
+    }
+
+    // Stored available_seats plus any change that hasn't been flushed yet
+    public int current(int showId, int storedAvailableSeats) {
+        LongAdder delta = pendingDeltas.get(showId);
+        return delta == null ? storedAvailableSeats : (int) (storedAvailableSeats + delta.sum());
+    }
+
+    // Forget unflushed changes for a show that no longer exists
+    public void discard(int showId) {
+        pendingDeltas.remove(showId);
+    }
+
+    // Write all pending deltas to show_times in one batch. A delta is only taken off once the
+    // batch has committed, so current() never reads a sold seat as free in between
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        List<LongAdder> flushed = new ArrayList<>();
+        for (Map.Entry<Integer, LongAdder> entry : pendingDeltas.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta != 0) {
+                batch.add(new Object[]{delta, entry.getKey()});
+                flushed.add(entry.getValue());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            // One transaction, so a failed flush leaves none of the batch applied
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate("UPDATE show_times SET available_seats = available_seats + ? WHERE show_time_id = ?", batch));
+        } catch (Exception e) {
+            // Nothing was taken off, so the next flush retries the same deltas
+            System.out.println("SeatCounter: Error flushing available seats: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            flushed.get(i).add(-(Long) batch.get(i)[0]);
+        }
+    }
+}
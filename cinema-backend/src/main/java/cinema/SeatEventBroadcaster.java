@@ -0,0 +1,251 @@
+package cinema;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+
+// Pushes seat changes to Server-Sent Events subscribers of a show time.
+// Each subscriber has a small bounded queue; a subscriber that falls behind has
+// its queue dropped and gets a fresh snapshot instead. Subscribers only use a
+// thread from the bounded fan-out pool while they have something to send.
+@Component
+public class SeatEventBroadcaster implements SeatChangeListener {
+
+    private static final int SUBSCRIBER_QUEUE_SIZE = 256;
+    private static final int MAX_DELTAS_PER_EVENT = 64;
+    private static final long HEARTBEAT_SECONDS = 30;
+    private static final long REJECTED_RETRY_MILLIS = 200;
+    private static final long SNAPSHOT_RETRY_MILLIS = 1000;
+
+    private final ObjectProvider<SeatInventory> seatInventory;
+    private final long streamTimeoutMillis;
+    private final ConcurrentHashMap<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ThreadPoolExecutor fanOut;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "seat-stream-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record SeatDelta(String seatNumber, boolean taken) {
+    }
+
+    private final class Subscriber {
+        private final int showId;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<SeatDelta> queue = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_SIZE);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean resync = true;
+        private volatile boolean heartbeatDue;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(int showId, SseEmitter emitter) {
+            this.showId = showId;
+            this.emitter = emitter;
+        }
+    }
+
+    @Autowired
+    public SeatEventBroadcaster(ObjectProvider<SeatInventory> seatInventory,
+                                @Value("${seats.stream.timeout-minutes:30}") long streamTimeoutMinutes,
+                                @Value("${seats.stream.fan-out-threads:4}") int fanOutThreads) {
+        this.seatInventory = seatInventory;
+        this.streamTimeoutMillis = TimeUnit.MINUTES.toMillis(streamTimeoutMinutes);
+        this.fanOut = new ThreadPoolExecutor(fanOutThreads, fanOutThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(4096), r -> {
+                Thread thread = new Thread(r, "seat-stream-fan-out");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.fanOut.allowCoreThreadTimeOut(true);
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdownNow();
+        fanOut.shutdownNow();
+    }
+
+    // Open a stream for a show. The first event is a snapshot of the taken seats.
+    public SseEmitter subscribe(int showId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        Subscriber subscriber = new Subscriber(showId, emitter);
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        // Registered under the map lock unsubscribe takes, so a stream that ends meanwhile
+        // is either removed again or never added
+        subscribers.compute(showId, (id, viewers) -> {
+            if (subscriber.closed.get()) {
+                return viewers;
+            }
+            Set<Subscriber> registered = viewers == null ? ConcurrentHashMap.newKeySet() : viewers;
+            registered.add(subscriber);
+            return registered;
+        });
+        schedule(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @Override
+    public void seatTaken(int showId, String seatNumber) {
+        publish(showId, new SeatDelta(seatNumber, true));
+    }
+
+    @Override
+    public void seatReleased(int showId, String seatNumber) {
+        publish(showId, new SeatDelta(seatNumber, false));
+    }
+
+    private void publish(int showId, SeatDelta delta) {
+        Set<Subscriber> viewers = subscribers.get(showId);
+        if (viewers == null) {
+            return;
+        }
+        for (Subscriber subscriber : viewers) {
+            if (!subscriber.queue.offer(delta)) {
+                // Too far behind: drop the backlog and send a snapshot instead
+                subscriber.queue.clear();
+                subscriber.resync = true;
+            }
+            schedule(subscriber);
+        }
+    }
+
+    // Marks every subscriber due a keep-alive. It is sent by the subscriber's own drain on the
+    // fan-out pool, so a slow client only holds up its own stream, never the sweep
+    private void sendHeartbeats() {
+        for (Set<Subscriber> viewers : subscribers.values()) {
+            for (Subscriber subscriber : viewers) {
+                subscriber.heartbeatDue = true;
+                schedule(subscriber);
+            }
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.closed.get() || !subscriber.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            fanOut.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            // Pool is saturated. Try again shortly rather than waiting for the next seat event,
+            // which on a quiet show may never come and would leave the snapshot unsent
+            subscriber.scheduled.set(false);
+            retryLater(subscriber, REJECTED_RETRY_MILLIS);
+        }
+    }
+
+    private void retryLater(Subscriber subscriber, long delayMillis) {
+        try {
+            heartbeat.schedule(() -> schedule(subscriber), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException shuttingDown) {
+            // Shutting down
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            if (subscriber.resync) {
+                subscriber.resync = false;
+                subscriber.queue.clear();
+                Map<String, Object> snapshot;
+                try {
+                    snapshot = buildSnapshot(subscriber.showId);
+                } catch (SeatInventoryUnavailableException e) {
+                    // Database is down: keep the stream open and try the snapshot again shortly
+                    System.out.println("SeatEventBroadcaster: " + e.getMessage());
+                    subscriber.resync = true;
+                    retryLater(subscriber, SNAPSHOT_RETRY_MILLIS);
+                    return;
+                }
+                subscriber.emitter.send(SseEmitter.event().name("snapshot").data(snapshot));
+            }
+
+            List<SeatDelta> batch = new ArrayList<>();
+            while (subscriber.queue.drainTo(batch, MAX_DELTAS_PER_EVENT) > 0) {
+                // In order, "+A1" for a seat taken and "-A1" for a seat released
+                List<String> changes = new ArrayList<>(batch.size());
+                for (SeatDelta delta : batch) {
+                    changes.add((delta.taken() ? "+" : "-") + delta.seatNumber());
+                }
+                Map<String, Object> event = new HashMap<>();
+                event.put("changes", changes);
+                subscriber.emitter.send(SseEmitter.event().name("delta").data(event));
+                batch.clear();
+            }
+
+            if (subscriber.heartbeatDue) {
+                subscriber.heartbeatDue = false;
+                subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+            }
+        } catch (IOException | IllegalStateException e) {
+            unsubscribe(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+
+        // Something may have arrived, or a heartbeat come due, after the queue was drained
+        if (!subscriber.queue.isEmpty() || subscriber.resync || subscriber.heartbeatDue) {
+            schedule(subscriber);
+        }
+    }
+
+    private Map<String, Object> buildSnapshot(int showId) {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("showId", showId);
+        ShowSeats seats = seatInventory.getObject().getShowSeats(showId);
+        if (seats == null) {
+            snapshot.put("seatCount", 0);
+            return snapshot;
+        }
+        snapshot.put("seatCount", seats.getSeatCount());
+        snapshot.put("rows", seats.getLayout().getRows());
+        snapshot.put("seatsPerRow", seats.getSeatsPerRow());
+        snapshot.put("taken", seats.encodeBitmap());
+        snapshot.put("extraTaken", seats.extraSeatNumbers());
+        return snapshot;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.showId, (id, viewers) -> {
+            viewers.remove(subscriber);
+            return viewers.isEmpty() ? null : viewers;
+        });
+    }
+}
@@ -0,0 +1,227 @@
+package cinema;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Tracks the expiry of every pending booking. A timing wheel ticking once a second
+// cancels expired bookings in batches and frees their seats.
+@Component
+public class SeatHoldManager {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 512;
+    private static final int BATCH_SIZE = 500;
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SeatInventory seatInventory;
+    private final int holdMinutes;
+    private final int maxExtensionMinutes;
+
+    private final ConcurrentHashMap<Integer, TimingWheel.Timeout<Integer>> holds = new ConcurrentHashMap<>();
+    private final TimingWheel<Integer> wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "seat-hold-wheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong totalExpired = new AtomicLong();
+    private final AtomicLongArray expiredPerSecond = new AtomicLongArray(RATE_WINDOW_SECONDS);
+
+    @Autowired
+    public SeatHoldManager(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, SeatInventory seatInventory,
+                           @Value("${booking.hold.minutes:30}") int holdMinutes,
+                           @Value("${booking.hold.max-extension-minutes:15}") int maxExtensionMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.seatInventory = seatInventory;
+        this.holdMinutes = holdMinutes;
+        this.maxExtensionMinutes = maxExtensionMinutes;
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    // Expiry for a booking created now
+    public Timestamp newHoldExpiry() {
+        return new Timestamp(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(holdMinutes));
+    }
+
+    // Start tracking a pending booking
+    public void hold(int bookingId, Timestamp expiresAt) {
+        TimingWheel.Timeout<Integer> timeout = wheel.schedule(bookingId, expiresAt.getTime());
+        TimingWheel.Timeout<Integer> previous = holds.put(bookingId, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    // Push a pending booking's expiry out by the given minutes. Returns the new expiry, or null if there is no hold
+    public Timestamp extend(int bookingId, int minutes) {
+        if (minutes <= 0 || minutes > maxExtensionMinutes) {
+            throw new IllegalArgumentException("Extension must be between 1 and " + maxExtensionMinutes + " minutes");
+        }
+        TimingWheel.Timeout<Integer> current = holds.get(bookingId);
+        if (current == null) {
+            return null;
+        }
+        Timestamp expiresAt = new Timestamp(current.getDeadline() + TimeUnit.MINUTES.toMillis(minutes));
+        int rows = jdbcTemplate.update("UPDATE booking SET hold_expires_at = ? WHERE booking_id = ? AND status = 'pending'",
+            expiresAt, bookingId);
+        if (rows == 0) {
+            return null;
+        }
+
+        TimingWheel.Timeout<Integer> replaced = holds.computeIfPresent(bookingId, (id, old) -> {
+            old.cancel();
+            return wheel.schedule(id, expiresAt.getTime());
+        });
+        return replaced == null ? null : expiresAt;
+    }
+
+    // Give up a hold right away: the booking is cancelled and its seats freed
+    public boolean release(int bookingId) {
+        TimingWheel.Timeout<Integer> current = holds.remove(bookingId);
+        if (current == null) {
+            return false;
+        }
+        current.cancel();
+        return cancelHolds(List.of(bookingId)) > 0;
+    }
+
+    // Stop tracking a booking that has been confirmed or deleted
+    public void clear(int bookingId) {
+        TimingWheel.Timeout<Integer> current = holds.remove(bookingId);
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    public Timestamp getExpiry(int bookingId) {
+        TimingWheel.Timeout<Integer> current = holds.get(bookingId);
+        return current == null ? null : new Timestamp(current.getDeadline());
+    }
+
+    // Register every pending booking, e.g. at startup. Already-expired ones go on the next tick.
+    public int loadPendingHolds() {
+        String query = """
+            SELECT booking_id,
+                   COALESCE(hold_expires_at, booking_datetime + INTERVAL 30 MINUTE) AS expires_at
+            FROM booking
+            WHERE status = 'pending'
+            """;
+        List<Integer> loaded = new ArrayList<>();
+        jdbcTemplate.query(query, rs -> {
+            int bookingId = rs.getInt("booking_id");
+            hold(bookingId, rs.getTimestamp("expires_at"));
+            loaded.add(bookingId);
+        });
+        System.out.println("SeatHoldManager: Loaded " + loaded.size() + " pending booking holds");
+        return loaded.size();
+    }
+
+    public Map<String, Object> getMetrics() {
+        long windowTotal = 0;
+        for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+            windowTotal += expiredPerSecond.get(i);
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("activeHolds", holds.size());
+        metrics.put("expiredTotal", totalExpired.get());
+        metrics.put("expirationsPerSecond", (double) windowTotal / RATE_WINDOW_SECONDS);
+        metrics.put("holdMinutes", holdMinutes);
+        return metrics;
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            List<Integer> expired = new ArrayList<>();
+            for (TimingWheel.Timeout<Integer> timeout : wheel.advance(now)) {
+                // Skip holds that were extended or cleared after this timeout was picked up
+                if (holds.remove(timeout.getItem(), timeout)) {
+                    expired.add(timeout.getItem());
+                }
+            }
+
+            int cancelled = 0;
+            for (int i = 0; i < expired.size(); i += BATCH_SIZE) {
+                cancelled += cancelHolds(expired.subList(i, Math.min(i + BATCH_SIZE, expired.size())));
+            }
+
+            int slot = (int) ((now / 1000) % RATE_WINDOW_SECONDS);
+            expiredPerSecond.set(slot, cancelled);
+            totalExpired.addAndGet(cancelled);
+            if (cancelled > 0) {
+                System.out.println("SeatHoldManager: Cancelled " + cancelled + " expired pending bookings");
+            }
+        } catch (Exception e) {
+            System.out.println("SeatHoldManager: Error expiring holds: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Cancel a batch of pending bookings and release their unpaid tickets in one transaction.
+    // The tickets stay as the cancelled order's history; released ones no longer hold a seat
+    private int cancelHolds(List<Integer> bookingIds) {
+        String placeholders = bookingIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        Object[] args = bookingIds.toArray();
+
+        List<Ticket> released = new ArrayList<>();
+        Integer cancelled = transactionTemplate.execute(status -> {
+            // Lock the rows that are still pending, the same lock TicketDAO takes to add tickets, so a
+            // concurrent confirm or seat reservation can't slip in between
+            List<Integer> pending = jdbcTemplate.query(
+                "SELECT booking_id FROM booking WHERE booking_id IN (" + placeholders + ") AND status = 'pending' FOR UPDATE",
+                (rs, rowNum) -> rs.getInt("booking_id"), args);
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            String pendingPlaceholders = pending.stream().map(id -> "?").collect(Collectors.joining(", "));
+            Object[] pendingArgs = pending.toArray();
+
+            jdbcTemplate.update("UPDATE booking SET status = 'cancelled' WHERE booking_id IN (" + pendingPlaceholders + ")", pendingArgs);
+            jdbcTemplate.query("SELECT show_id, seat_number FROM ticket WHERE booking_id IN (" + pendingPlaceholders + ") AND NOT released", rs -> {
+                Ticket ticket = new Ticket();
+                ticket.setShowId(rs.getInt("show_id"));
+                ticket.setSeatNumber(rs.getString("seat_number"));
+                released.add(ticket);
+            }, pendingArgs);
+            jdbcTemplate.update("UPDATE ticket SET released = TRUE WHERE booking_id IN (" + pendingPlaceholders + ")", pendingArgs);
+            return pending.size();
+        });
+
+        for (Ticket ticket : released) {
+            seatInventory.seatReleased(ticket.getShowId(), ticket.getSeatNumber());
+        }
+        return cancelled == null ? 0 : cancelled;
+    }
+}
@@ -0,0 +1,147 @@
+package cinema;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// In-memory seat bitmaps per show time, laid out by the showroom's SeatLayout.
+// Each show is loaded from the ticket table the first time it's asked for and
+// then kept current by TicketDAO.
+// Every committed change is also passed on to the SeatChangeListeners.
+@Component
+public class SeatInventory {
+
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SeatLayoutCache seatLayouts;
+    private final List<SeatChangeListener> listeners;
+    private final ConcurrentHashMap<Integer, ShowSeats> shows = new ConcurrentHashMap<>();
+    // Counts committed seat changes, so a load can tell if one slipped past it
+    private final AtomicLong seatChanges = new AtomicLong();
+
+    @Autowired
+    public SeatInventory(JdbcTemplate jdbcTemplate, SeatLayoutCache seatLayouts, List<SeatChangeListener> listeners) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.seatLayouts = seatLayouts;
+        this.listeners = listeners;
+    }
+
+    // Get the seat bitmap for a show, loading it on first use. Returns null if the show doesn't exist.
+    // Throws SeatInventoryUnavailableException if the database can't be read.
+    public ShowSeats getShowSeats(int showId) {
+        ShowSeats seats = shows.get(showId);
+        if (seats != null) {
+            return seats;
+        }
+        // Loaded outside the map, so the queries never run while holding its lock. A change
+        // committed during the load found no bitmap to update, so that load is done again
+        for (int attempt = 1; ; attempt++) {
+            long changesBefore = seatChanges.get();
+            ShowSeats loaded = loadShowSeats(showId);
+            if (loaded == null) {
+                return null;
+            }
+            ShowSeats existing = shows.putIfAbsent(showId, loaded);
+            if (existing != null) {
+                return existing;
+            }
+            if (seatChanges.get() == changesBefore || attempt == MAX_LOAD_ATTEMPTS
+                    || !shows.remove(showId, loaded)) {
+                return loaded;
+            }
+        }
+    }
+
+    public List<String> getTakenSeats(int showId) {
+        ShowSeats seats = getShowSeats(showId);
+        return seats == null ? Collections.emptyList() : seats.takenSeatNumbers();
+    }
+
+    public boolean isAvailable(int showId, String seatNumber) {
+        ShowSeats seats = getShowSeats(showId);
+        return seats != null && !seats.isTaken(seatNumber);
+    }
+
+    public int getAvailableCount(int showId) {
+        ShowSeats seats = getShowSeats(showId);
+        return seats == null ? 0 : seats.availableCount();
+    }
+
+    // Claim a seat before writing its ticket. A compare-and-set on the seat's bit, so of
+    // several concurrent claims for the same seat exactly one wins without touching MySQL.
+    public boolean tryClaim(int showId, String seatNumber) {
+        ShowSeats seats = getShowSeats(showId);
+        return seats != null && seats.mark(seatNumber);
+    }
+
+    // Undo a claim whose ticket was never written
+    public void releaseClaim(int showId, String seatNumber) {
+        ShowSeats seats = shows.get(showId);
+        if (seats != null) {
+            seats.clear(seatNumber);
+        }
+    }
+
+    // Called after a ticket row is committed (normally for a seat already claimed).
+    // Shows that aren't loaded yet will pick it up on load.
+    public void seatTaken(int showId, String seatNumber) {
+        seatChanges.incrementAndGet();
+        shows.computeIfPresent(showId, (id, seats) -> {
+            seats.mark(seatNumber);
+            return seats;
+        });
+        for (SeatChangeListener listener : listeners) {
+            listener.seatTaken(showId, seatNumber);
+        }
+    }
+
+    // Called after a ticket row is deleted
+    public void seatReleased(int showId, String seatNumber) {
+        seatChanges.incrementAndGet();
+        shows.computeIfPresent(showId, (id, seats) -> {
+            seats.clear(seatNumber);
+            return seats;
+        });
+        for (SeatChangeListener listener : listeners) {
+            listener.seatReleased(showId, seatNumber);
+        }
+    }
+
+    // Drop a show so it is reloaded on next access (e.g. after the show time is deleted)
+    public void evict(int showId) {
+        shows.remove(showId);
+    }
+
+    private ShowSeats loadShowSeats(int showId) {
+        try {
+            List<Integer> showroomIds = jdbcTemplate.query("SELECT showroom_id FROM show_times WHERE show_time_id = ?",
+                (rs, rowNum) -> rs.getInt("showroom_id"), showId);
+            if (showroomIds.isEmpty()) {
+                System.out.println("SeatInventory: No show time found with ID " + showId);
+                return null;
+            }
+
+            int showroomId = showroomIds.get(0);
+            SeatLayout layout = seatLayouts.getLayout(showroomId);
+            ShowSeats seats = new ShowSeats(showId, showroomId, layout != null ? layout : SeatLayout.defaultFor(0));
+            jdbcTemplate.query("SELECT seat_number FROM ticket WHERE show_id = ? AND NOT released",
+                rs -> {
+                    seats.mark(rs.getString("seat_number"));
+                },
+                showId);
+
+            System.out.println("SeatInventory: Loaded show " + showId + " with " + seats.takenCount() + " taken seats");
+            return seats;
+        } catch (Exception e) {
+            System.out.println("SeatInventory: Error loading seats for show " + showId + ": " + e.getMessage());
+            e.printStackTrace();
+            throw new SeatInventoryUnavailableException(showId, e);
+        }
+    }
+}
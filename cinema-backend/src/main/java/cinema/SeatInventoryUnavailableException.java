@@ -0,0 +1,18 @@
+package cinema;
+
+// Thrown when a show's seats can't be loaded from the database, so callers answer 503 rather than 500
+public class SeatInventoryUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int showId;
+
+    public SeatInventoryUnavailableException(int showId, Throwable cause) {
+        super("Seats for show " + showId + " are temporarily unavailable", cause);
+        this.showId = showId;
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+}
@@ -0,0 +1,168 @@
+package cinema;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+
+// Immutable seat layout of a showroom: a grid of rows x seatsPerRow cells, the
+// columns followed by an aisle, and cells with no seat (pillars, wheelchair spaces,
+// a short back row). Cell i is row i / seatsPerRow, column i % seatsPerRow and is
+// labelled like the seat picker ("A1" = row 0, column 0).
+//
+// Stored in showroom.seat_layout as "rows x seatsPerRow;aisles;blocked", e.g.
+// "12x20;4,15;AAAAgA==", where aisles are 0-based columns with an aisle after them
+// and blocked is the Base64 bitmap of blocked cells.
+public class SeatLayout {
+
+    public static final int MAX_ROWS = 26;
+    public static final int MAX_SEATS_PER_ROW = 64;
+
+    private final int rows;
+    private final int seatsPerRow;
+    private final int[] aisles;
+    private final BitSet blocked;
+    private final int seatCount;
+    private final long[] blockedRowBits;
+    private final long aisleBits;
+
+    public SeatLayout(int rows, int seatsPerRow, int[] aisles, BitSet blocked) {
+        if (rows < 0 || rows > MAX_ROWS || seatsPerRow < 1 || seatsPerRow > MAX_SEATS_PER_ROW) {
+            throw new IllegalArgumentException("Layout must have at most " + MAX_ROWS + " rows and 1 to "
+                + MAX_SEATS_PER_ROW + " seats per row");
+        }
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+        this.aisles = Arrays.stream(aisles).filter(c -> c >= 0 && c < seatsPerRow - 1).distinct().sorted().toArray();
+        this.blocked = (BitSet) blocked.clone();
+        this.blocked.clear(rows * seatsPerRow, Math.max(this.blocked.length(), rows * seatsPerRow));
+        this.seatCount = rows * seatsPerRow - this.blocked.cardinality();
+
+        // Per-row masks for word-level scans: bit c is column c
+        this.blockedRowBits = new long[rows];
+        for (int i = this.blocked.nextSetBit(0); i >= 0; i = this.blocked.nextSetBit(i + 1)) {
+            blockedRowBits[i / seatsPerRow] |= 1L << (i % seatsPerRow);
+        }
+        long aisleMask = 0;
+        for (int column : this.aisles) {
+            aisleMask |= 1L << column;
+        }
+        this.aisleBits = aisleMask;
+    }
+
+    // Layout for a showroom with only a seat count: full rows of the default width,
+    // the cells past the last seat are blocked. Very large rooms get wider rows.
+    public static SeatLayout defaultFor(int seatCount) {
+        int seats = Math.min(Math.max(seatCount, 0), MAX_ROWS * MAX_SEATS_PER_ROW);
+        int seatsPerRow = Math.max(ShowSeats.DEFAULT_SEATS_PER_ROW, (seats + MAX_ROWS - 1) / MAX_ROWS);
+        int rows = (seats + seatsPerRow - 1) / seatsPerRow;
+        BitSet blocked = new BitSet();
+        blocked.set(seats, rows * seatsPerRow);
+        return new SeatLayout(rows, seatsPerRow, new int[0], blocked);
+    }
+
+    // Parse a stored layout; falls back to the default layout when there is none
+    public static SeatLayout decode(String encoded, int seatCount) {
+        if (encoded == null || encoded.isBlank()) {
+            return defaultFor(seatCount);
+        }
+        try {
+            String[] parts = encoded.trim().split(";", -1);
+            String[] size = parts[0].toLowerCase().split("x");
+            int rows = Integer.parseInt(size[0].trim());
+            int seatsPerRow = Integer.parseInt(size[1].trim());
+
+            int[] aisles = new int[0];
+            if (parts.length > 1 && !parts[1].isBlank()) {
+                aisles = Arrays.stream(parts[1].split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+            }
+            BitSet blocked = new BitSet();
+            if (parts.length > 2 && !parts[2].isBlank()) {
+                blocked = BitSet.valueOf(Base64.getDecoder().decode(parts[2].trim()));
+            }
+            return new SeatLayout(rows, seatsPerRow, aisles, blocked);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid seat layout: " + encoded, e);
+        }
+    }
+
+    public String encode() {
+        StringBuilder encoded = new StringBuilder().append(rows).append('x').append(seatsPerRow).append(';');
+        for (int i = 0; i < aisles.length; i++) {
+            encoded.append(i > 0 ? "," : "").append(aisles[i]);
+        }
+        return encoded.append(';').append(getBlockedBitmap()).toString();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    public int[] getAisles() {
+        return aisles.clone();
+    }
+
+    // Sellable seats: all cells minus the blocked ones
+    public int getSeatCount() {
+        return seatCount;
+    }
+
+    public int getCellCount() {
+        return rows * seatsPerRow;
+    }
+
+    // Base64 of the blocked-cell bitmap (bit i of byte i/8 is cell i)
+    public String getBlockedBitmap() {
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(blocked.toByteArray(), (getCellCount() + 7) >>> 3));
+    }
+
+    public boolean isBlocked(int index) {
+        return blocked.get(index);
+    }
+
+    // Blocked cells of a row, bit c for column c
+    public long blockedRowBits(int row) {
+        return blockedRowBits[row];
+    }
+
+    // Columns followed by an aisle, bit c for column c
+    public long aisleBits() {
+        return aisleBits;
+    }
+
+    public boolean hasAisleAfter(int column) {
+        return Arrays.binarySearch(aisles, column) >= 0;
+    }
+
+    // Map a seat label like "C7" to its cell index, or -1 if it isn't a cell in this layout
+    public int indexOf(String seatNumber) {
+        if (seatNumber == null) {
+            return -1;
+        }
+        String label = seatNumber.trim().toUpperCase();
+        if (label.length() < 2) {
+            return -1;
+        }
+        int row = label.charAt(0) - 'A';
+        if (row < 0 || row >= rows) {
+            return -1;
+        }
+        int col;
+        try {
+            col = Integer.parseInt(label.substring(1)) - 1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (col < 0 || col >= seatsPerRow) {
+            return -1;
+        }
+        return row * seatsPerRow + col;
+    }
+
+    public String labelOf(int index) {
+        return String.valueOf((char) ('A' + index / seatsPerRow)) + (index % seatsPerRow + 1);
+    }
+}
@@ -0,0 +1,62 @@
+package cinema;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Parsed seat layouts per showroom. Layouts are immutable, so one instance is shared
+// by every show time in the room. Showrooms are only set up in the database, so a
+// changed layout is picked up on the next restart.
+@Component
+public class SeatLayoutCache {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<Integer, SeatLayout> layouts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SeatLayoutCache(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Get a showroom's layout, loading it on first use. Returns null if the showroom doesn't exist
+    public SeatLayout getLayout(int showroomId) {
+        SeatLayout layout = layouts.get(showroomId);
+        if (layout != null) {
+            return layout;
+        }
+        return layouts.computeIfAbsent(showroomId, this::loadLayout);
+    }
+
+    // Layout for a showroom row that has already been read, so listing showrooms needs no extra queries
+    public SeatLayout fromRow(int showroomId, String encoded, int seatCount) {
+        SeatLayout layout = layouts.get(showroomId);
+        if (layout != null) {
+            return layout;
+        }
+        return layouts.computeIfAbsent(showroomId, id -> parse(id, encoded, seatCount));
+    }
+
+    private SeatLayout loadLayout(int showroomId) {
+        List<SeatLayout> found = jdbcTemplate.query(
+            "SELECT seat_count, seat_layout FROM showroom WHERE showroom_id = ?",
+            (rs, rowNum) -> parse(showroomId, rs.getString("seat_layout"), rs.getInt("seat_count")),
+            showroomId);
+        if (found.isEmpty()) {
+            System.out.println("SeatLayoutCache: No showroom found with ID " + showroomId);
+            return null;
+        }
+        return found.get(0);
+    }
+
+    private SeatLayout parse(int showroomId, String encoded, int seatCount) {
+        try {
+            return SeatLayout.decode(encoded, seatCount);
+        } catch (IllegalArgumentException e) {
+            System.out.println("SeatLayoutCache: " + e.getMessage() + " for showroom " + showroomId + ", using the default layout");
+            return SeatLayout.defaultFor(seatCount);
+        }
+    }
+}
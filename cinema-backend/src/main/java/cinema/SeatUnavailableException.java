@@ -0,0 +1,26 @@
+package cinema;
+
+import java.util.List;
+
+// Thrown when one or more requested seats are already taken for a show
+public class SeatUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int showId;
+    private final List<String> seatNumbers;
+
+    public SeatUnavailableException(int showId, List<String> seatNumbers) {
+        super("Seat(s) " + String.join(", ", seatNumbers) + " already taken for show " + showId);
+        this.showId = showId;
+        this.seatNumbers = List.copyOf(seatNumbers);
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+
+    public List<String> getSeatNumbers() {
+        return seatNumbers;
+    }
+}
@@ -0,0 +1,76 @@
+package cinema;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Stateless login sessions. Login hands out a signed token naming the user; every later
+// request is resolved from its Authorization header by checking the signature in memory,
+// with no database lookup. Logging out records the time per user, and tokens issued
+// before it are refused.
+@Component
+public class SessionTokens {
+
+    private static final String PREFIX = "session";
+    private static final String BEARER = "Bearer ";
+
+    // The signed-in user behind a request
+    public record Session(int userId, boolean admin, long issuedAtMillis) {
+    }
+
+    private final TokenSigner tokenSigner;
+    private final long ttlMillis;
+    private final ConcurrentHashMap<Integer, Long> loggedOutAt = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SessionTokens(TokenSigner tokenSigner, @Value("${security.session-ttl-hours:12}") long ttlHours) {
+        this.tokenSigner = tokenSigner;
+        this.ttlMillis = TimeUnit.HOURS.toMillis(ttlHours);
+    }
+
+    public String issue(User user) {
+        return tokenSigner.sign(PREFIX + ":" + user.getUserId() + ":" + (user.isAdmin() ? 1 : 0) + ":" + System.currentTimeMillis());
+    }
+
+    // The session for an Authorization header ("Bearer <token>" or the bare token), or null if
+    // it is missing, forged, expired or logged out
+    public Session resolve(String authorization) {
+        if (authorization == null) {
+            return null;
+        }
+        String token = authorization.startsWith(BEARER) ? authorization.substring(BEARER.length()).trim() : authorization.trim();
+        String payload = tokenSigner.verify(token);
+        if (payload == null) {
+            return null;
+        }
+        String[] parts = payload.split(":");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return null;
+        }
+        try {
+            Session session = new Session(Integer.parseInt(parts[1]), "1".equals(parts[2]), Long.parseLong(parts[3]));
+            long now = System.currentTimeMillis();
+            if (now - session.issuedAtMillis() > ttlMillis) {
+                return null;
+            }
+            Long logout = loggedOutAt.get(session.userId());
+            if (logout != null && session.issuedAtMillis() <= logout) {
+                return null;
+            }
+            return session;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Refuse every token the user was issued up to now
+    public void logout(int userId) {
+        long now = System.currentTimeMillis();
+        loggedOutAt.put(userId, now);
+        // Past the TTL those tokens are refused anyway
+        loggedOutAt.values().removeIf(at -> now - at > ttlMillis);
+    }
+}
@@ -0,0 +1,243 @@
+package cinema;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Seat state for a single show time: one bit per layout cell, 64 cells per word.
+// Seat labels come from the showroom's SeatLayout; blocked cells can never be taken.
+// Labels that don't fit the layout are kept in a small side set so nothing is lost.
+public class ShowSeats {
+
+    public static final int DEFAULT_SEATS_PER_ROW = 10;
+
+    private final int showId;
+    private final int showroomId;
+    private final SeatLayout layout;
+    private final AtomicLongArray words;
+    private final Set<String> extraSeats = ConcurrentHashMap.newKeySet();
+
+    public ShowSeats(int showId, int showroomId, SeatLayout layout) {
+        this.showId = showId;
+        this.showroomId = showroomId;
+        this.layout = layout;
+        this.words = new AtomicLongArray((layout.getCellCount() + 63) >>> 6);
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+
+    public int getShowroomId() {
+        return showroomId;
+    }
+
+    public SeatLayout getLayout() {
+        return layout;
+    }
+
+    public int getSeatCount() {
+        return layout.getSeatCount();
+    }
+
+    public int getSeatsPerRow() {
+        return layout.getSeatsPerRow();
+    }
+
+    // Map a seat label like "C7" to its bit index, or -1 if it isn't a cell in this room
+    public int indexOf(String seatNumber) {
+        return layout.indexOf(seatNumber);
+    }
+
+    public String labelOf(int index) {
+        return layout.labelOf(index);
+    }
+
+    public boolean isTaken(String seatNumber) {
+        int index = indexOf(seatNumber);
+        if (index < 0) {
+            return seatNumber != null && extraSeats.contains(seatNumber.trim().toUpperCase());
+        }
+        return isTaken(index);
+    }
+
+    public boolean isTaken(int index) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    // Set the seat's bit; returns false if it was already set or the cell has no seat
+    public boolean mark(String seatNumber) {
+        int index = indexOf(seatNumber);
+        if (index < 0) {
+            return seatNumber != null && extraSeats.add(seatNumber.trim().toUpperCase());
+        }
+        if (layout.isBlocked(index)) {
+            return false;
+        }
+        int w = index >>> 6;
+        long bit = 1L << index;
+        while (true) {
+            long current = words.get(w);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(w, current, current | bit)) {
+                return true;
+            }
+        }
+    }
+
+    // Clear the seat's bit; returns false if it was already clear
+    public boolean clear(String seatNumber) {
+        int index = indexOf(seatNumber);
+        if (index < 0) {
+            return seatNumber != null && extraSeats.remove(seatNumber.trim().toUpperCase());
+        }
+        int w = index >>> 6;
+        long bit = 1L << index;
+        while (true) {
+            long current = words.get(w);
+            if ((current & bit) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(w, current, current & ~bit)) {
+                return true;
+            }
+        }
+    }
+
+    public int takenCount() {
+        int count = extraSeats.size();
+        for (int w = 0; w < words.length(); w++) {
+            count += Long.bitCount(words.get(w));
+        }
+        return count;
+    }
+
+    public int availableCount() {
+        int taken = 0;
+        for (int w = 0; w < words.length(); w++) {
+            taken += Long.bitCount(words.get(w));
+        }
+        return layout.getSeatCount() - taken;
+    }
+
+    public List<String> takenSeatNumbers() {
+        List<String> seats = new ArrayList<>(extraSeats);
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w);
+            while (word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                seats.add(labelOf(index));
+                word &= word - 1;
+            }
+        }
+        return seats;
+    }
+
+    // Best block of partySize adjacent free seats in one row, not split by an aisle, closest
+    // to the centre of the room. Scans each row as a single word. Returns an empty list if
+    // there is no such block. Seats may be taken meanwhile, so the caller still has to claim them.
+    public List<String> findBestBlock(int partySize) {
+        int rows = layout.getRows();
+        int seatsPerRow = layout.getSeatsPerRow();
+        if (partySize < 1 || partySize > seatsPerRow) {
+            return new ArrayList<>();
+        }
+        long rowMask = seatsPerRow == 64 ? -1L : (1L << seatsPerRow) - 1;
+        long connected = ~layout.aisleBits();
+
+        long bestScore = Long.MAX_VALUE;
+        int bestRow = -1;
+        int bestStart = -1;
+        // Rows from the centre outwards, so the scan can stop once a row can't beat the best block
+        for (int step = 0; step < rows; step++) {
+            int row = (rows - 1) / 2 + ((step & 1) == 1 ? (step + 1) / 2 : -(step / 2));
+            long rowDistance = 2L * row - (rows - 1);
+            long rowScore = rowDistance * rowDistance * seatsPerRow * seatsPerRow;
+            if (rowScore >= bestScore) {
+                break;
+            }
+
+            long free = ~(rowBits(row, seatsPerRow) | layout.blockedRowBits(row)) & rowMask;
+            // Bit s survives if seats s .. s+partySize-1 are free with no aisle in between
+            long starts = free;
+            for (int i = 1; i < partySize && starts != 0; i++) {
+                starts &= (free >>> i) & (connected >>> (i - 1));
+            }
+
+            while (starts != 0) {
+                int start = Long.numberOfTrailingZeros(starts);
+                starts &= starts - 1;
+                long columnDistance = 2L * start + partySize - seatsPerRow;
+                long score = rowScore + columnDistance * columnDistance * rows * rows;
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestRow = row;
+                    bestStart = start;
+                }
+            }
+        }
+
+        List<String> seats = new ArrayList<>(partySize);
+        if (bestRow >= 0) {
+            for (int col = bestStart; col < bestStart + partySize; col++) {
+                seats.add(labelOf(bestRow * seatsPerRow + col));
+            }
+        }
+        return seats;
+    }
+
+    // Taken bits of one row, bit c for column c (a row can straddle two words)
+    private long rowBits(int row, int seatsPerRow) {
+        int first = row * seatsPerRow;
+        int w = first >>> 6;
+        int offset = first & 63;
+        long bits = words.get(w) >>> offset;
+        if (offset + seatsPerRow > 64) {
+            bits |= words.get(w + 1) << (64 - offset);
+        }
+        return bits;
+    }
+
+    // Point-in-time copy of the bitmap words
+    public long[] snapshot() {
+        long[] copy = new long[words.length()];
+        for (int w = 0; w < copy.length; w++) {
+            copy[w] = words.get(w);
+        }
+        return copy;
+    }
+
+    public List<String> extraSeatNumbers() {
+        return new ArrayList<>(extraSeats);
+    }
+
+    // Base64 of the taken-seat bitmap, one bit per layout cell (bit i of byte i/8 is cell i)
+    public String encodeBitmap() {
+        return encodeBitmap(snapshot(), layout.getCellCount());
+    }
+
+    // Base64 of the available-seat bitmap: cells that are neither blocked nor taken
+    public String encodeAvailableBitmap() {
+        long[] available = snapshot();
+        for (int i = 0; i < layout.getCellCount(); i++) {
+            available[i >>> 6] ^= layout.isBlocked(i) ? 0 : 1L << i;
+        }
+        return encodeBitmap(available, layout.getCellCount());
+    }
+
+    public static String encodeBitmap(long[] words, int cellCount) {
+        ByteBuffer buffer = ByteBuffer.allocate(words.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), (cellCount + 7) >>> 3));
+    }
+}
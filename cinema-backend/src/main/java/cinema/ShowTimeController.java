@@ -1,10 +1,15 @@
 package cinema;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,8 +17,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/showtimes")
@@ -21,10 +29,19 @@ import org.springframework.web.bind.annotation.RestController;
 public class ShowTimeController {
     
     private final ShowTimeDAO showTimeDAO;
+    private final SeatInventory seatInventory;
+    private final SeatEventBroadcaster seatEventBroadcaster;
+    private final CatalogCache catalogCache;
+    private final ResourceVersions resourceVersions;
 
     @Autowired
-    public ShowTimeController(ShowTimeDAO showTimeDAO) {
+    public ShowTimeController(ShowTimeDAO showTimeDAO, SeatInventory seatInventory, SeatEventBroadcaster seatEventBroadcaster,
+                              CatalogCache catalogCache, ResourceVersions resourceVersions) {
         this.showTimeDAO = showTimeDAO;
+        this.seatInventory = seatInventory;
+        this.seatEventBroadcaster = seatEventBroadcaster;
+        this.catalogCache = catalogCache;
+        this.resourceVersions = resourceVersions;
     }
 
     // Add multiple showtimes
@@ -35,6 +52,7 @@ public class ShowTimeController {
             boolean success = showTimeDAO.addShowTimes(showTimes);
 
             if (success) {
+                catalogCache.invalidate();
                 System.out.println("ShowTimeController: Successfully added showtimes (DAO returned true).");
                 return ResponseEntity.ok("Showtimes added successfully!");
             } else {
@@ -66,6 +84,7 @@ public class ShowTimeController {
             boolean deleted = showTimeDAO.deleteShowTimeById(showTimeId);
 
             if (deleted) {
+                catalogCache.invalidate();
                 System.out.println("ShowTimeController: Successfully deleted showtime ID: " + showTimeId);
                 return ResponseEntity.ok("Showtime deleted successfully.");
             } else {
@@ -86,12 +105,20 @@ public class ShowTimeController {
     }
 
     @GetMapping("/movie/{movieId}")
-    public ResponseEntity<?> fetchShowTimesForMovie(@PathVariable int movieId) {
+    public ResponseEntity<?> fetchShowTimesForMovie(@PathVariable int movieId,
+                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            // Available seats change with every sale, so clients always revalidate
+            CacheControl cacheControl = CacheControl.noCache().cachePublic();
+            String etag = resourceVersions.etag(ResourceVersions.SHOW_TIMES, ResourceVersions.SEATS);
+            ResponseEntity<?> notModified = ResourceVersions.notModified(ifNoneMatch, etag, cacheControl);
+            if (notModified != null) {
+                return notModified;
+            }
             System.out.println("ShowTimeController: Fetching showtimes for movie ID " + movieId);
             List<ShowTime> showTimes = showTimeDAO.getShowTimesByMovieId(movieId);
 
-            return ResponseEntity.ok(showTimes);
+            return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(showTimes);
         } catch (RuntimeException e) {
             System.out.println("ShowTimeController: Error fetching showtimes: " + e.getMessage());
             e.printStackTrace();
@@ -103,4 +130,54 @@ public class ShowTimeController {
         }
     }
 
+    // Live seat changes for a show: a "snapshot" event followed by "delta" events
+    @GetMapping(value = "/{id}/seats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSeats(@PathVariable("id") int showTimeId) {
+        try {
+            if (seatInventory.getShowSeats(showTimeId) == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            System.out.println("ShowTimeController: Opening seat stream for showtime ID " + showTimeId);
+            return ResponseEntity.ok(seatEventBroadcaster.subscribe(showTimeId));
+        } catch (SeatInventoryUnavailableException e) {
+            System.out.println("ShowTimeController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        } catch (Exception e) {
+            System.out.println("ShowTimeController: Error opening seat stream: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // "Pick for me": the best block of adjacent free seats for a party, centre of the room first
+    @GetMapping("/{id}/seats/best")
+    public ResponseEntity<Map<String, Object>> findBestSeats(@PathVariable("id") int showTimeId,
+                                                             @RequestParam("count") int partySize) {
+        try {
+            ShowSeats seats = seatInventory.getShowSeats(showTimeId);
+            if (seats == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            if (partySize < 1 || partySize > seats.getSeatsPerRow()) {
+                System.out.println("ShowTimeController: Invalid party size " + partySize + " for showtime ID " + showTimeId);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            }
+
+            List<String> block = seats.findBestBlock(partySize);
+            if (block.isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("showId", showTimeId);
+            response.put("seats", block);
+            return ResponseEntity.ok(response);
+        } catch (SeatInventoryUnavailableException e) {
+            System.out.println("ShowTimeController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        } catch (Exception e) {
+            System.out.println("ShowTimeController: Error finding best seats: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 }
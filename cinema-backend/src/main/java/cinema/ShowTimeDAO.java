@@ -17,10 +17,17 @@ import java.time.LocalTime;
 @Repository
 public class ShowTimeDAO {
     private final JdbcTemplate jdbcTemplate;
+    private final SeatInventory seatInventory;
+    private final SeatCounter seatCounter;
+    private final ResourceVersions resourceVersions;
 
     @Autowired
-    public ShowTimeDAO(JdbcTemplate jdbcTemplate) {
+    public ShowTimeDAO(JdbcTemplate jdbcTemplate, SeatInventory seatInventory, SeatCounter seatCounter,
+                       ResourceVersions resourceVersions) {
         this.jdbcTemplate = jdbcTemplate;
+        this.seatInventory = seatInventory;
+        this.seatCounter = seatCounter;
+        this.resourceVersions = resourceVersions;
     }
 
     public boolean addShowTimes(List<ShowTime> showTimes) {
@@ -53,6 +60,9 @@ public class ShowTimeDAO {
                     newShowTime.getPrice()
                 );
     
+                if (rowsAffected > 0) {
+                    resourceVersions.bump(ResourceVersions.SHOW_TIMES);
+                }
                 if (rowsAffected <= 0) {
                     System.out.println("Insert failed for showtime (rowsAffected=0): " + newShowTime);
                     return false;
@@ -116,6 +126,9 @@ public class ShowTimeDAO {
         try {
             int rowsAffected = jdbcTemplate.update(sql, showTimeId);
             if (rowsAffected > 0) {
+                resourceVersions.bump(ResourceVersions.SHOW_TIMES);
+                seatInventory.evict(showTimeId);
+                seatCounter.discard(showTimeId);
                 System.out.println("ShowTimeDAO: Successfully deleted showtime with ID: " + showTimeId);
                 return true;
             } else {
@@ -141,7 +154,7 @@ public class ShowTimeDAO {
                 showTime.setShowroomId(rs.getInt("showroom_id"));
                 showTime.setShowDate(rs.getDate("show_date"));
                 showTime.setShowTime(rs.getObject("show_time", LocalTime.class));
-                showTime.setAvailableSeats(rs.getInt("available_seats"));
+                showTime.setAvailableSeats(seatCounter.current(showTime.getShowTimeId(), rs.getInt("available_seats")));
                 showTime.setDuration(rs.getInt("duration"));
                 showTime.setPrice(rs.getBigDecimal("price"));
                 return showTime;
@@ -164,7 +177,7 @@ public class ShowTimeDAO {
                 st.setShowroomId(rs.getInt("showroom_id"));
                 st.setShowDate(rs.getDate("show_date"));
                 st.setShowTime(rs.getObject("show_time", LocalTime.class));
-                st.setAvailableSeats(rs.getInt("available_seats"));
+                st.setAvailableSeats(seatCounter.current(st.getShowTimeId(), rs.getInt("available_seats")));
                 st.setDuration(rs.getInt("duration"));
                 st.setPrice(rs.getBigDecimal("price"));
                 return st;
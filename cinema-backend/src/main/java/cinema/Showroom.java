@@ -5,6 +5,7 @@ public class Showroom {
     private int theatreId;
     private String showroomName;
     private int seatCount;
+    private SeatLayout layout;
 
     // Default constructor
     public Showroom() {
@@ -51,6 +52,13 @@ public class Showroom {
         this.seatCount = seatCount;
     }
 
+    public SeatLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(SeatLayout layout) {
+        this.layout = layout;
+    }
 
     @Override
     public String toString() {
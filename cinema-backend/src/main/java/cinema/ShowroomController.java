@@ -1,14 +1,21 @@
 package cinema;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -16,20 +23,36 @@ import org.springframework.web.bind.annotation.RestController;
 @CrossOrigin(origins = "http://localhost:3000")
 public class ShowroomController {
     private final ShowroomDAO showroomDAO;
+    private final SeatLayoutCache seatLayouts;
+    private final SeatInventory seatInventory;
+    private final ResourceVersions resourceVersions;
+
+    // Showrooms are set up in the database and not edited through the API
+    private static final CacheControl SHOWROOMS_CACHE = CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic();
 
     @Autowired
-    public ShowroomController(ShowroomDAO showroomDAO) {
+    public ShowroomController(ShowroomDAO showroomDAO, SeatLayoutCache seatLayouts, SeatInventory seatInventory,
+                              ResourceVersions resourceVersions) {
         this.showroomDAO = showroomDAO;
+        this.seatLayouts = seatLayouts;
+        this.seatInventory = seatInventory;
+        this.resourceVersions = resourceVersions;
     }
 
     //Get all showrooms
     @GetMapping
-    public ResponseEntity<List<Showroom>> getShowrooms() {
+    public ResponseEntity<List<Showroom>> getShowrooms(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String etag = resourceVersions.etag(ResourceVersions.SHOWROOMS);
+            ResponseEntity<List<Showroom>> notModified = ResourceVersions.notModified(ifNoneMatch, etag, SHOWROOMS_CACHE);
+            if (notModified != null) {
+                return notModified;
+            }
             System.out.println("ShowroomController: Fetching all showrooms");
             List<Showroom> showrooms = showroomDAO.getAllShowrooms();
             System.out.println("ShowroomController: Found " + showrooms.size() + " showrooms");
-            return ResponseEntity.ok(showrooms);
+            return ResponseEntity.ok().eTag(etag).cacheControl(SHOWROOMS_CACHE).body(showrooms);
         } catch (Exception e) {
             System.out.println("ShowroomController: Error fetching showrooms: " + e.getMessage());
             e.printStackTrace();
@@ -57,4 +80,43 @@ public class ShowroomController {
         }
     }
 
+    // Seat map of a showroom. With showId, also the seats still available for that show time,
+    // as a bitmap over the layout cells (bit i of byte i/8 is cell i)
+    @GetMapping("/{id}/layout")
+    public ResponseEntity<Map<String, Object>> getLayout(@PathVariable("id") int showroomId,
+                                                         @RequestParam(value = "showId", required = false) Integer showId) {
+        try {
+            SeatLayout layout = seatLayouts.getLayout(showroomId);
+            if (layout == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("showroomId", showroomId);
+            response.put("rows", layout.getRows());
+            response.put("seatsPerRow", layout.getSeatsPerRow());
+            response.put("aisles", layout.getAisles());
+            response.put("seatCount", layout.getSeatCount());
+            response.put("blocked", layout.getBlockedBitmap());
+
+            if (showId != null) {
+                ShowSeats seats = seatInventory.getShowSeats(showId);
+                if (seats == null || seats.getShowroomId() != showroomId) {
+                    System.out.println("ShowroomController: Show time " + showId + " is not in showroom " + showroomId);
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+                }
+                response.put("showId", showId);
+                response.put("available", seats.encodeAvailableBitmap());
+                response.put("availableCount", seats.availableCount());
+            }
+            return ResponseEntity.ok(response);
+        } catch (SeatInventoryUnavailableException e) {
+            System.out.println("ShowroomController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        } catch (Exception e) {
+            System.out.println("ShowroomController: Error fetching layout for showroom " + showroomId + ": " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 }
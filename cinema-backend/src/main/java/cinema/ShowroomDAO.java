@@ -10,10 +10,12 @@ import org.springframework.stereotype.Repository;
 @Repository
 public class ShowroomDAO {
     private final JdbcTemplate jdbcTemplate;
+    private final SeatLayoutCache seatLayouts;
 
     @Autowired
-    public ShowroomDAO(JdbcTemplate jdbcTemplate) {
+    public ShowroomDAO(JdbcTemplate jdbcTemplate, SeatLayoutCache seatLayouts) {
         this.jdbcTemplate = jdbcTemplate;
+        this.seatLayouts = seatLayouts;
     }
      
     //Get all showrooms in admin page for scheduling movie
@@ -29,6 +31,7 @@ public class ShowroomDAO {
                     showroom.setTheatreId(rs.getInt("theatre_id"));
                     showroom.setShowroomName(rs.getString("showroom_name"));
                     showroom.setSeatCount(rs.getInt("seat_count"));
+                    showroom.setLayout(seatLayouts.fromRow(showroom.getShowroomId(), rs.getString("seat_layout"), showroom.getSeatCount()));
                     return showroom;
                 }
             );
@@ -53,6 +56,7 @@ public class ShowroomDAO {
                     showroom.setTheatreId(rs.getInt("theatre_id"));
                     showroom.setShowroomName(rs.getString("showroom_name"));
                     showroom.setSeatCount(rs.getInt("seat_count"));
+                    showroom.setLayout(seatLayouts.fromRow(showroom.getShowroomId(), rs.getString("seat_layout"), showroom.getSeatCount()));
                     return showroom;
                 },
                 showroomId
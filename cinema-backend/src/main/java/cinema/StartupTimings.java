@@ -0,0 +1,71 @@
+package cinema;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// How long each startup phase took and when the application became ready to serve,
+// measured from JVM start. Logged once at ready and exposed at /api/metrics/startup.
+@Component
+public class StartupTimings {
+
+    private record Phase(String name, long startedAtMillis, long durationMillis, boolean blocking, String error) {
+    }
+
+    private final List<Phase> phases = new CopyOnWriteArrayList<>();
+    private volatile long readyAtMillis = -1;
+
+    // Run one startup step and record how long it took. Errors are logged and recorded, not rethrown,
+    // so one failing step doesn't stop the others.
+    public <T> T time(String name, boolean blocking, Callable<T> step) {
+        long start = System.currentTimeMillis();
+        String error = null;
+        T result = null;
+        try {
+            result = step.call();
+        } catch (Exception e) {
+            error = String.valueOf(e.getMessage());
+            System.out.println("StartupTimings: Startup step " + name + " failed: " + error);
+            e.printStackTrace();
+        }
+        long duration = System.currentTimeMillis() - start;
+        phases.add(new Phase(name, start - jvmStartMillis(), duration, blocking, error));
+        System.out.println("StartupTimings: " + name + " took " + duration + " ms");
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyAtMillis = System.currentTimeMillis() - jvmStartMillis();
+        System.out.println("StartupTimings: Ready to serve " + readyAtMillis + " ms after JVM start");
+    }
+
+    public Map<String, Object> getMetrics() {
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (Phase phase : phases) {
+            Map<String, Object> step = new HashMap<>();
+            step.put("name", phase.name());
+            step.put("startedAtMillis", phase.startedAtMillis());
+            step.put("durationMillis", phase.durationMillis());
+            step.put("blocksReady", phase.blocking());
+            step.put("error", phase.error());
+            steps.add(step);
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("readyAfterMillis", readyAtMillis < 0 ? null : readyAtMillis);
+        metrics.put("phases", steps);
+        return metrics;
+    }
+
+    private static long jvmStartMillis() {
+        return ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
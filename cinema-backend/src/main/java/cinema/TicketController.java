@@ -1,9 +1,11 @@
 package cinema;
 
 import java.util.List;
+import java.util.Map;
 import cinema.Ticket;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -12,6 +14,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -21,26 +24,81 @@ import org.springframework.web.bind.annotation.RestController;
 public class TicketController {
 
     private final TicketDAO ticketDAO;
+    private final BookingDAO bookingDAO;
+    private final IdempotencyStore idempotencyStore;
+    private final WaitingRoom waitingRoom;
+    private final TicketPricing ticketPricing;
+    private final SessionTokens sessionTokens;
 
     @Autowired
-    public TicketController(TicketDAO ticketDAO) {
+    public TicketController(TicketDAO ticketDAO, BookingDAO bookingDAO, IdempotencyStore idempotencyStore, WaitingRoom waitingRoom,
+                            TicketPricing ticketPricing, SessionTokens sessionTokens) {
         this.ticketDAO = ticketDAO;
+        this.bookingDAO = bookingDAO;
+        this.idempotencyStore = idempotencyStore;
+        this.waitingRoom = waitingRoom;
+        this.ticketPricing = ticketPricing;
+        this.sessionTokens = sessionTokens;
     }
 
-    // Add a new ticket
+    // Add a new ticket. A retry with the same Idempotency-Key gets the original answer without adding another ticket.
+    // Only the booking's customer can add to it, and the price comes from the show time
     @PostMapping("/add")
-    public ResponseEntity<String> AddTicket(@RequestBody Ticket ticket) {
+    public ResponseEntity<?> AddTicket(@RequestBody Ticket ticket,
+                                       @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                       @RequestHeader(value = WaitingRoom.TOKEN_HEADER, required = false) String queueToken,
+                                       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        SessionTokens.Session session = sessionTokens.resolve(authorization);
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Please log in to add a ticket.");
+        }
+        Booking booking = bookingDAO.getBookingById(ticket.getBookingId());
+        if (booking == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Booking not found.");
+        }
+        if (booking.getCustomerId() != session.userId()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("This booking belongs to another customer.");
+        }
+        return idempotencyStore.execute("ticket-add", idempotencyKey, fingerprint(ticket),
+            () -> addTicket(ticket, booking, queueToken), body -> body);
+    }
+
+    private ResponseEntity<String> addTicket(Ticket ticket, Booking booking, String queueToken) {
         try {
             System.out.println("TicketController: Adding a new ticket...");
-            int ticketId = ticketDAO.addTicket(ticket);
+            ticketPricing.price(List.of(ticket));
+            ResponseEntity<Map<String, Object>> notAdmitted = waitingRoom.claim(List.of(ticket), queueToken, booking.getCustomerId());
+            if (notAdmitted != null) {
+                return ResponseEntity.status(notAdmitted.getStatusCode()).headers(notAdmitted.getHeaders())
+                    .body(String.valueOf(notAdmitted.getBody().get("error")));
+            }
+            int ticketId = 0;
+            try {
+                ticketId = ticketDAO.addTicket(ticket);
+            } finally {
+                waitingRoom.finish(queueToken, ticketId > 0);
+            }
 
             if (ticketId > 0) {
                 System.out.println("TicketController: Successfully added ticket with ID " + ticketId);
                 return ResponseEntity.ok("Ticket added successfully!");
+            } else if (ticketId == TicketDAO.SEAT_TAKEN) {
+                System.out.println("TicketController: Seat already taken.");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Seat already taken.");
+            } else if (ticketId == TicketDAO.BOOKING_NOT_PENDING) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Booking is not pending.");
             } else {
                 System.out.println("TicketController: Failed to add ticket.");
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to add ticket.");
             }
+        } catch (IllegalArgumentException e) {
+            System.out.println("TicketController: Invalid ticket: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (SeatInventoryUnavailableException e) {
+            System.out.println("TicketController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
         } catch (Exception e) {
             System.out.println("TicketController: Error adding ticket: " + e.getMessage());
             e.printStackTrace();
@@ -48,6 +106,15 @@ public class TicketController {
         }
     }
 
+    // What makes two ticket requests the same. Fields are normalized so that a retry spelled slightly
+    // differently still matches; the price is set by the server and so is not part of it
+    private static String fingerprint(Ticket ticket) {
+        return "bookingId=" + ticket.getBookingId()
+            + ";showId=" + ticket.getShowId()
+            + ";type=" + (ticket.getTicketType() == null ? "" : ticket.getTicketType().trim().toLowerCase())
+            + ";seat=" + (ticket.getSeatNumber() == null ? "" : ticket.getSeatNumber().trim().toUpperCase());
+    }
+
     // Delete a ticket
     @DeleteMapping("/delete/{ticketId}")
     public ResponseEntity<String> DeleteTicket(@PathVariable int ticketId) {
@@ -116,6 +183,9 @@ public class TicketController {
                 return ResponseEntity.noContent().build();
             }
             return ResponseEntity.ok(seatNumbers);
+        } catch (SeatInventoryUnavailableException e) {
+            System.out.println("TicketController: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
         } catch (Exception e) {
             System.out.println("TicketController: Error fetching seat numbers: " + e.getMessage());
             e.printStackTrace();
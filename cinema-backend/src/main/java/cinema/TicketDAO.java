@@ -3,39 +3,69 @@ package cinema;
 import java.math.BigDecimal;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 
 @Repository
 public class TicketDAO {
 
     private final JdbcTemplate jdbcTemplate;
+    private final SeatInventory seatInventory;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public TicketDAO(JdbcTemplate jdbcTemplate) {
+    public TicketDAO(JdbcTemplate jdbcTemplate, SeatInventory seatInventory, TransactionTemplate transactionTemplate) {
         this.jdbcTemplate = jdbcTemplate;
+        this.seatInventory = seatInventory;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    // Add a new ticket
+    // Returned by addTicket when another customer already has the seat
+    public static final int SEAT_TAKEN = -2;
+    public static final int BOOKING_NOT_PENDING = -3;
+
+    // Add a new ticket. Returns the ticket ID, SEAT_TAKEN, or -1 on failure
     public int addTicket(Ticket ticket) {
         String sql = "INSERT INTO ticket (booking_id, show_id, movie_title, ticket_type, price, seat_number) " +
                      "VALUES (?, ?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        try {
-            // Basic null checks for required fields before attempting insert
-            if (ticket == null || ticket.getPrice() == null || ticket.getTicketType() == null || ticket.getSeatNumber() == null || ticket.getBookingId() <= 0 || ticket.getShowId() <= 0) {
-                 System.err.println("TicketDAO: Attempted to add ticket with invalid/null fields: " + ticket);
-                 return -1;
-            }
+        // Basic null checks for required fields before attempting insert
+        if (ticket == null || ticket.getPrice() == null || ticket.getTicketType() == null || ticket.getSeatNumber() == null || ticket.getBookingId() <= 0 || ticket.getShowId() <= 0) {
+             System.err.println("TicketDAO: Attempted to add ticket with invalid/null fields: " + ticket);
+             return -1;
+        }
+
+        final BigDecimal price = ticket.getPrice();
+        final String seatNumber = ticket.getSeatNumber().trim().toUpperCase();
+        final String ticketTypeLower = ticket.getTicketType().toLowerCase();
+        final int bookingId = ticket.getBookingId();
+        final int showId = ticket.getShowId();
+
+        // Claim the seat in memory first so contested seats are turned away before any SQL runs
+        if (!seatInventory.tryClaim(showId, seatNumber)) {
+            System.out.println("TicketDAO: Seat " + seatNumber + " already taken for show_id " + showId);
+            return SEAT_TAKEN;
+        }
 
+        boolean inserted = false;
+        try {
             String lookedUpMovieTitle;
             try {
                 String titleSql = """
@@ -44,41 +74,41 @@ public class TicketDAO {
                     JOIN show_times st ON m.movie_id = st.movie_id
                     WHERE st.show_time_id = ?
                     """;
-                lookedUpMovieTitle = jdbcTemplate.queryForObject(titleSql, String.class, ticket.getShowId());
+                lookedUpMovieTitle = jdbcTemplate.queryForObject(titleSql, String.class, showId);
             } catch (EmptyResultDataAccessException e) {
-                System.err.println("TicketDAO: Could not find movie title for show_id: " + ticket.getShowId());
+                System.err.println("TicketDAO: Could not find movie title for show_id: " + showId);
                 return -1;
             } catch (DataAccessException e) {
-                System.err.println("TicketDAO: Database error looking up movie title for show_id " + ticket.getShowId() + ": " + e.getMessage());
+                System.err.println("TicketDAO: Database error looking up movie title for show_id " + showId + ": " + e.getMessage());
                 e.printStackTrace();
                 return -1;
             }
 
             final String finalMovieTitle = lookedUpMovieTitle;
-            final BigDecimal price = ticket.getPrice();
-            final String seatNumber = ticket.getSeatNumber();
-            final String ticketTypeLower = ticket.getTicketType().toLowerCase();
-            final int bookingId = ticket.getBookingId();
-            final int showId = ticket.getShowId();
-
-            int rowsAffected = jdbcTemplate.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-                ps.setInt(1, bookingId);
-                ps.setInt(2, showId);
-                ps.setString(3, finalMovieTitle);
-                ps.setString(4, ticketTypeLower);
-                ps.setBigDecimal(5, price);
-                ps.setString(6, seatNumber);
-                return ps;
-            }, keyHolder);
-
-            if (rowsAffected == 0) {
+
+            Integer rowsAffected = transactionTemplate.execute(status -> {
+                lockPendingBooking(bookingId);
+                return jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                    ps.setInt(1, bookingId);
+                    ps.setInt(2, showId);
+                    ps.setString(3, finalMovieTitle);
+                    ps.setString(4, ticketTypeLower);
+                    ps.setBigDecimal(5, price);
+                    ps.setString(6, seatNumber);
+                    return ps;
+                }, keyHolder);
+            });
+
+            if (rowsAffected == null || rowsAffected == 0) {
                 // Insert failed, but no exception was thrown 
                 System.err.println("TicketDAO: Insert query affected 0 rows. Ticket not added.");
                 return -1;
             }
+            inserted = true;
 
             Number key = keyHolder.getKey();
+            seatInventory.seatTaken(showId, seatNumber);
             // Check if key is null 
             if (key == null) {
                 System.err.println("TicketDAO: Generated key was null after insert. Ticket may not have been added correctly.");
@@ -86,8 +116,16 @@ public class TicketDAO {
             }
             return key.intValue(); // Return generated ID
 
+        } catch (DuplicateKeyException e) {
+            // The (show_id, seat_number) unique key caught a seat this instance didn't know was sold; keep it marked
+            inserted = true;
+            System.out.println("TicketDAO: Seat " + seatNumber + " already sold for show_id " + showId + " (unique key)");
+            return SEAT_TAKEN;
+        } catch (BookingNotPendingException e) {
+            System.out.println("TicketDAO: " + e.getMessage());
+            return BOOKING_NOT_PENDING;
         } catch (DataAccessException e) {
-            System.err.println("TicketDAO: Database error adding ticket for booking_id=" + ticket.getBookingId() + ", show_id=" + ticket.getShowId() + " - Error: " + e.getMessage());
+            System.err.println("TicketDAO: Database error adding ticket for booking_id=" + bookingId + ", show_id=" + showId + " - Error: " + e.getMessage());
 
             if (e.getRootCause() != null) {
                  System.err.println("TicketDAO: Root Cause: " + e.getRootCause().getMessage());
@@ -99,14 +137,192 @@ public class TicketDAO {
              System.err.println("TicketDAO: Unexpected error adding ticket: " + e.getClass().getName() + " - " + e.getMessage());
              e.printStackTrace();
              return -1;
+        } finally {
+            if (!inserted) {
+                seatInventory.releaseClaim(showId, seatNumber);
+            }
+        }
+    }
+
+    // Add several tickets to one booking in a single transaction (all or nothing).
+    // Returns the generated ticket IDs in request order. Throws BookingNotPendingException
+    // if the booking was confirmed or cancelled, e.g. by its hold expiring, before the insert
+    public List<Integer> addTickets(int bookingId, List<Ticket> tickets) {
+        if (bookingId <= 0) {
+            throw new IllegalArgumentException("A booking ID is required");
+        }
+        validateTickets(tickets);
+        claimSeats(tickets);
+
+        List<Integer> ticketIds;
+        try {
+            ticketIds = transactionTemplate.execute(status -> {
+                lockPendingBooking(bookingId);
+                return insertTickets(bookingId, tickets);
+            });
+        } catch (RuntimeException e) {
+            handleFailedInsert(tickets, e);
+            throw e;
+        }
+
+        confirmSeats(tickets);
+        System.out.println("TicketDAO: Reserved " + tickets.size() + " seats for booking_id=" + bookingId);
+        return ticketIds;
+    }
+
+    // Check the tickets are complete and no seat is requested twice for the same show
+    public void validateTickets(List<Ticket> tickets) {
+        if (tickets == null || tickets.isEmpty()) {
+            throw new IllegalArgumentException("At least one ticket is required");
+        }
+        Map<Integer, Set<String>> seatsByShow = new HashMap<>();
+        for (Ticket ticket : tickets) {
+            if (ticket == null || ticket.getPrice() == null || ticket.getTicketType() == null || ticket.getSeatNumber() == null || ticket.getShowId() <= 0) {
+                throw new IllegalArgumentException("Invalid ticket in reservation: " + ticket);
+            }
+            ticket.setSeatNumber(ticket.getSeatNumber().trim().toUpperCase());
+            if (!seatsByShow.computeIfAbsent(ticket.getShowId(), id -> new LinkedHashSet<>()).add(ticket.getSeatNumber())) {
+                throw new IllegalArgumentException("Seat " + ticket.getSeatNumber() + " requested more than once for show " + ticket.getShowId());
+            }
+        }
+    }
+
+    // Claim every seat in memory. If any is taken, the ones already claimed are given back
+    public void claimSeats(List<Ticket> tickets) {
+        List<Ticket> claimed = new ArrayList<>();
+        for (Ticket ticket : tickets) {
+            boolean claimedSeat;
+            try {
+                claimedSeat = seatInventory.tryClaim(ticket.getShowId(), ticket.getSeatNumber());
+            } catch (SeatInventoryUnavailableException e) {
+                releaseClaims(claimed);
+                throw e;
+            }
+            if (!claimedSeat) {
+                releaseClaims(claimed);
+                throw new SeatUnavailableException(ticket.getShowId(), List.of(ticket.getSeatNumber()));
+            }
+            claimed.add(ticket);
+        }
+    }
+
+    public void releaseClaims(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            seatInventory.releaseClaim(ticket.getShowId(), ticket.getSeatNumber());
+        }
+    }
+
+    // Publish the seats once the transaction holding their tickets has committed
+    public void confirmSeats(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            seatInventory.seatTaken(ticket.getShowId(), ticket.getSeatNumber());
+        }
+    }
+
+    // Undo the claims after a failed insert. A unique-key violation means the in-memory
+    // seats were stale, so those shows are reloaded from the database.
+    public void handleFailedInsert(List<Ticket> tickets, RuntimeException e) {
+        releaseClaims(tickets);
+        if (e instanceof DuplicateKeyException) {
+            tickets.stream().map(Ticket::getShowId).distinct().forEach(seatInventory::evict);
+        }
+    }
+
+    // Lock the booking row for the rest of the transaction, and make sure it is still pending.
+    // SeatHoldManager takes the same lock before cancelling, so an expiring hold either sees
+    // the new tickets and releases them, or cancels first and the insert is refused
+    private void lockPendingBooking(int bookingId) {
+        List<String> status = jdbcTemplate.queryForList("SELECT status FROM booking WHERE booking_id = ? FOR UPDATE",
+            String.class, bookingId);
+        if (status.isEmpty() || !"pending".equals(status.get(0))) {
+            throw new BookingNotPendingException(bookingId);
+        }
+    }
+
+    // Batch-insert claimed tickets for a booking. Joins the caller's transaction if there is one.
+    public List<Integer> insertTickets(int bookingId, List<Ticket> tickets) {
+        String sql = "INSERT INTO ticket (booking_id, show_id, movie_title, ticket_type, price, seat_number) " +
+                     "VALUES (?, ?, ?, ?, ?, ?)";
+
+        Set<Integer> showIds = tickets.stream().map(Ticket::getShowId).collect(Collectors.toSet());
+        Map<Integer, String> titles = lookUpMovieTitles(showIds);
+        for (Integer showId : showIds) {
+            if (!titles.containsKey(showId)) {
+                throw new IllegalArgumentException("No movie found for show_id: " + showId);
+            }
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            connection -> connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws java.sql.SQLException {
+                    Ticket ticket = tickets.get(i);
+                    ps.setInt(1, bookingId);
+                    ps.setInt(2, ticket.getShowId());
+                    ps.setString(3, titles.get(ticket.getShowId()));
+                    ps.setString(4, ticket.getTicketType().toLowerCase());
+                    ps.setBigDecimal(5, ticket.getPrice());
+                    ps.setString(6, ticket.getSeatNumber());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return tickets.size();
+                }
+            },
+            keyHolder);
+
+        List<Integer> ids = new ArrayList<>();
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            Object key = keys.values().iterator().next();
+            ids.add(((Number) key).intValue());
+        }
+        if (ids.size() != tickets.size()) {
+            throw new IllegalStateException("Expected " + tickets.size() + " ticket IDs but got " + ids.size());
         }
+        for (int i = 0; i < tickets.size(); i++) {
+            tickets.get(i).setTicketId(ids.get(i));
+            tickets.get(i).setBookingId(bookingId);
+            tickets.get(i).setMovieTitle(titles.get(tickets.get(i).getShowId()));
+        }
+        return ids;
+    }
+
+    // Movie title for each show, in one query
+    private Map<Integer, String> lookUpMovieTitles(Set<Integer> showIds) {
+        String placeholders = showIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        String titleSql = "SELECT st.show_time_id, m.title FROM show_times st " +
+                          "JOIN movies m ON m.movie_id = st.movie_id " +
+                          "WHERE st.show_time_id IN (" + placeholders + ")";
+        Map<Integer, String> titles = new HashMap<>();
+        jdbcTemplate.query(titleSql, rs -> {
+            titles.put(rs.getInt("show_time_id"), rs.getString("title"));
+        }, showIds.toArray());
+        return titles;
     }
 
     // Delete a ticket
     public boolean deleteTicket(int ticketId) {
         try {
+            // Look up the seat first so the inventory can be released after the delete
+            List<Ticket> existing = jdbcTemplate.query("SELECT show_id, seat_number FROM ticket WHERE ticket_id = ?",
+                (rs, rowNum) -> {
+                    Ticket ticket = new Ticket();
+                    ticket.setShowId(rs.getInt("show_id"));
+                    ticket.setSeatNumber(rs.getString("seat_number"));
+                    return ticket;
+                }, ticketId);
+            if (existing.isEmpty()) {
+                return false;
+            }
+
             String sql = "DELETE FROM ticket WHERE ticket_id = ?";
             int rowsAffected = jdbcTemplate.update(sql, ticketId);
+            if (rowsAffected > 0) {
+                seatInventory.seatReleased(existing.get(0).getShowId(), existing.get(0).getSeatNumber());
+            }
             return rowsAffected > 0;
         } catch (DataAccessException e) { 
             System.err.println("TicketDAO: Error deleting ticket ID " + ticketId + ": " + e.getMessage());
@@ -184,11 +400,12 @@ public class TicketDAO {
         }
     }
 
-    // Get a list of seat numbers for a specific show ID
+    // Get a list of seat numbers for a specific show ID (served from the in-memory seat bitmap)
     public List<String> getSeatNumbersByShowId(int showId) {
         try {
-            String query = "SELECT seat_number FROM ticket WHERE show_id = ?";
-            return jdbcTemplate.query(query, new Object[]{showId}, (rs, rowNum) -> rs.getString("seat_number"));
+            return seatInventory.getTakenSeats(showId);
+        } catch (SeatInventoryUnavailableException e) {
+            throw e; // the caller answers 503
         } catch (DataAccessException e) { 
             System.err.println("TicketDAO: Error getting seat numbers by show ID " + showId + ": " + e.getMessage());
              if (e.getRootCause() != null) {
@@ -0,0 +1,60 @@
+package cinema;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Ticket prices for an order, from the show time's price in the database. Prices sent by the
+// client are never used. Children and seniors pay a fixed share of the show time's price.
+@Component
+public class TicketPricing {
+
+    private static final Map<String, BigDecimal> MULTIPLIERS = Map.of(
+        "adult", BigDecimal.ONE,
+        "child", new BigDecimal("0.90"),
+        "senior", new BigDecimal("0.95"));
+
+    private final ShowTimeDAO showTimeDAO;
+
+    @Autowired
+    public TicketPricing(ShowTimeDAO showTimeDAO) {
+        this.showTimeDAO = showTimeDAO;
+    }
+
+    // Set each ticket's type to lower case and its price to the price of that type for its show time.
+    // Throws IllegalArgumentException for an unknown ticket type or show time. Incomplete tickets
+    // are left for TicketDAO.validateTickets to reject
+    public void price(List<Ticket> tickets) {
+        if (tickets == null) {
+            return;
+        }
+        Map<Integer, BigDecimal> basePrices = new HashMap<>();
+        for (Ticket ticket : tickets) {
+            if (ticket == null || ticket.getTicketType() == null) {
+                continue;
+            }
+            String type = ticket.getTicketType().trim().toLowerCase();
+            BigDecimal multiplier = MULTIPLIERS.get(type);
+            if (multiplier == null) {
+                throw new IllegalArgumentException("Unknown ticket type: " + ticket.getTicketType());
+            }
+            BigDecimal basePrice = basePrices.computeIfAbsent(ticket.getShowId(), this::basePrice);
+            ticket.setTicketType(type);
+            ticket.setPrice(basePrice.multiply(multiplier).setScale(2, RoundingMode.HALF_UP));
+        }
+    }
+
+    private BigDecimal basePrice(int showId) {
+        ShowTime showTime = showTimeDAO.getShowTimeById(showId)
+            .orElseThrow(() -> new IllegalArgumentException("Show time " + showId + " does not exist."));
+        if (showTime.getPrice() == null) {
+            throw new IllegalArgumentException("Show time " + showId + " has no price set.");
+        }
+        return showTime.getPrice();
+    }
+}
@@ -0,0 +1,103 @@
+package cinema;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Hashed timing wheel. Any thread may schedule or cancel; only one thread may call advance().
+// Scheduling is O(1) and each tick only looks at the entries in one bucket.
+public class TimingWheel<T> {
+
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final int mask;
+    private final List<ArrayDeque<Timeout<T>>> buckets;
+    private final Queue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+    private long tick;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("tickMillis must be positive and wheelSize a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.mask = wheelSize - 1;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+    }
+
+    public Timeout<T> schedule(T item, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(item, deadlineMillis);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    // Process every tick up to nowMillis and return the timeouts that expired
+    public List<Timeout<T>> advance(long nowMillis) {
+        List<Timeout<T>> expired = new ArrayList<>();
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        while (tick <= targetTick) {
+            transferPending();
+            Iterator<Timeout<T>> it = buckets.get((int) (tick & mask)).iterator();
+            while (it.hasNext()) {
+                Timeout<T> timeout = it.next();
+                if (timeout.cancelled) {
+                    it.remove();
+                } else if (timeout.remainingRounds <= 0) {
+                    it.remove();
+                    expired.add(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+            }
+            tick++;
+        }
+        return expired;
+    }
+
+    private void transferPending() {
+        Timeout<T> timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long calculated = Math.floorDiv(timeout.deadline - startMillis, tickMillis);
+            timeout.remainingRounds = (calculated - tick) / buckets.size();
+            long ticks = Math.max(calculated, tick);
+            buckets.get((int) (ticks & mask)).add(timeout);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package cinema;
+
+import java.util.concurrent.TimeUnit;
+
+// Token bucket rate limiter: refills at a fixed rate up to its capacity.
+// tryAcquire never waits; acquire reserves the permits and sleeps until they are due,
+// so a request for more permits than the capacity is simply spread out over time.
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and refill rate must be positive");
+        }
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    // Take permits if they are available right now
+    public synchronized boolean tryAcquire(int permits) {
+        refill();
+        if (tokens >= permits) {
+            tokens -= permits;
+            return true;
+        }
+        return false;
+    }
+
+    // Nanoseconds until the given permits would be available (0 if they are now)
+    public synchronized long nanosUntilAvailable(int permits) {
+        refill();
+        return tokens >= permits ? 0 : (long) Math.ceil((permits - tokens) / refillPerNano);
+    }
+
+    // Take permits, waiting as long as needed
+    public void acquire(int permits) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            // Borrow against future refills; the debt is paid off before anyone else gets a token
+            tokens -= permits;
+            waitNanos = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / refillPerNano);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -25,11 +26,13 @@ public class UserController {
 
     private final UserDAO userDAO;
     private final EmailService emailService;
+    private final SessionTokens sessionTokens;
     
     @Autowired
-    public UserController(UserDAO userDAO, EmailService emailService) {
+    public UserController(UserDAO userDAO, EmailService emailService, SessionTokens sessionTokens) {
         this.userDAO = userDAO;
         this.emailService = emailService;
+        this.sessionTokens = sessionTokens;
     }
 
     // CREATE User
@@ -69,6 +72,8 @@ public class UserController {
                 "message", "Registration successful. Please check your email for verification.",
                 "userId", userId
             ));
+        } catch (HashingBusyException e) {
+            return hashingBusy(e);
         } catch (Exception e) {
             System.out.println("UserController: Error registering user: " + e.getMessage());
             e.printStackTrace();
@@ -116,12 +121,16 @@ public class UserController {
     }
 
     @PutMapping("/change-password")
-    public ResponseEntity<?> changePassword(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<?> changePassword(@RequestBody Map<String, String> payload,
+                                            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         try {
-            int userId = userDAO.getActiveUserId();
+            SessionTokens.Session session = sessionTokens.resolve(authorization);
+            if (session == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Please log in again"));
+            }
+            int userId = session.userId();
             String oldPassword = payload.get("oldPassword");
             String newPassword = payload.get("newPassword");
-            System.out.println("+++++++++++++++++" + oldPassword + "+++++++++++++++++++++");
             // Validate the old password and update with the new password
             boolean passwordChanged = userDAO.changePassword(userId, oldPassword, newPassword);
             
@@ -145,6 +154,8 @@ public class UserController {
             } else {
                 return ResponseEntity.badRequest().body(Map.of("error", "Incorrect old password"));
             }
+        } catch (HashingBusyException e) {
+            return hashingBusy(e);
         } catch (Exception e) {
             System.out.println("UserController: Error changing password: " + e.getMessage());
             e.printStackTrace();
@@ -260,6 +271,8 @@ public class UserController {
         } catch (NumberFormatException e) {
             System.out.println("UserController: Invalid ID format: " + id);
             return ResponseEntity.badRequest().body("Invalid user ID format");
+        } catch (HashingBusyException e) {
+            return hashingBusy(e);
         } catch (Exception e) {
             System.out.println("UserController: Unexpected error: " + e.getMessage());
             e.printStackTrace();
@@ -268,45 +281,37 @@ public class UserController {
     }
 
     @PutMapping("/update-details")
-    public ResponseEntity<?> updateUserDetails(@RequestBody Map<String, Object> userDetails) {
+    public ResponseEntity<?> updateUserDetails(@RequestBody Map<String, Object> userDetails,
+                                               @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         try {
-            // Extract the email, first name, and last name from the request body
-            String email = (String) userDetails.get("email");
+            // The account comes from the session token, never from the request body
+            SessionTokens.Session session = sessionTokens.resolve(authorization);
+            if (session == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Please log in again"));
+            }
             String newFirstName = (String) userDetails.get("firstName");
             String newLastName = (String) userDetails.get("lastName");
             Boolean promotionSubscription = (Boolean) userDetails.get("promotionSubscription");
         
-            if (email == null || newFirstName == null || newLastName == null) {
-                return ResponseEntity.badRequest().body("Email, first name, and last name are required");
+            if (newFirstName == null || newLastName == null) {
+                return ResponseEntity.badRequest().body("First name and last name are required");
             }
 
-            // Get the current user email before update (to send notification to this email)
-            String currentEmail = email;  // Default to the provided email
-            Integer activeUserId = userDAO.getActiveUserId();
-            if (activeUserId != null) {
-                User currentUser = userDAO.getUserProfileById(activeUserId);
-                if (currentUser != null && !currentUser.getEmail().equals(email)) {
-                    // If email is being changed, store the original email for notification
-                    currentEmail = currentUser.getEmail();
-                    System.out.println("UserController: Email is being changed from " + currentEmail + " to " + email);
-                }
+            User currentUser = userDAO.getUserProfileById(session.userId());
+            if (currentUser == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found"));
             }
 
             // Call the UserDAO method to update user details
-            boolean success = userDAO.updateUserDetails(email, newFirstName, newLastName, promotionSubscription);
+            boolean success = userDAO.updateUserDetails(session.userId(), newFirstName, newLastName, promotionSubscription);
 
             if (success) {
-                // Send profile update email notification to the CURRENT email (before update)
+                // Send profile update email notification to the account's email
+                String email = currentUser.getEmail();
                 try {
-                    System.out.println("UserController: Sending profile update notification to: " + currentEmail);
-                    emailService.sendProfileUpdateEmail(currentEmail);
-                    System.out.println("UserController: Profile update email sent successfully to: " + currentEmail);
-                    
-                    // If email was changed, also send notification to the new email
-                    if (!currentEmail.equals(email)) {
-                        System.out.println("UserController: Also sending profile update notification to new email: " + email);
-                        emailService.sendProfileUpdateEmail(email);
-                    }
+                    System.out.println("UserController: Sending profile update notification to: " + email);
+                    emailService.sendProfileUpdateEmail(email);
+                    System.out.println("UserController: Profile update email sent successfully to: " + email);
                 } catch (Exception emailError) {
                     System.err.println("UserController: Failed to send profile update email: " + emailError.getMessage());
                     emailError.printStackTrace();
@@ -314,7 +319,7 @@ public class UserController {
                 }
                 return ResponseEntity.ok(Map.of("message", "User details updated successfully"));
             } else {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found with the provided email"));
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found"));
             }
         } catch (Exception e) {
             System.out.println("UserController: Error updating user details: " + e.getMessage());
@@ -361,7 +366,12 @@ public class UserController {
         String email = loginRequest.getEmail();
         String password = loginRequest.getPassword();
     
-        Map<String, Object> result = userDAO.validateUserLogin(email, password);
+        Map<String, Object> result;
+        try {
+            result = userDAO.validateUserLogin(email, password);
+        } catch (HashingBusyException e) {
+            return hashingBusy(e);
+        }
         boolean isValid = (boolean) result.get("isValid");
 
         if (isValid) {
@@ -381,7 +391,7 @@ public class UserController {
             response.put("firstName", user.getFirstName());
             response.put("lastName", user.getLastName());
             response.put("isAdmin", user.isAdmin());
-            response.put("token", generateJwtToken(user)); 
+            response.put("token", sessionTokens.issue(user));
 
             return ResponseEntity.ok(response);
         } else {
@@ -390,31 +400,21 @@ public class UserController {
         }
     }
     
-    // User Logout function
+    // User Logout function: tokens issued to this user so far stop working
     @PostMapping("/logout")
-    public ResponseEntity<?> logoutUser(@RequestBody Map<String, String> payload) {
-
-        String email = payload.get("email");
-        
-        if (email == null) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Email is required"));
-        }
-        
-        boolean success = userDAO.logoutUser(email);
-        
-        if (success) {
-            return ResponseEntity.ok(Map.of("message", "Logout successful"));
-        } else {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body(Map.of("error", "Failed to logout user"));
+    public ResponseEntity<?> logoutUser(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        SessionTokens.Session session = sessionTokens.resolve(authorization);
+        if (session != null) {
+            sessionTokens.logout(session.userId());
         }
+        return ResponseEntity.ok(Map.of("message", "Logout successful"));
     }
 
     @GetMapping("/active")
-    public ResponseEntity<Map<String, Object>> checkActiveUser() {
+    public ResponseEntity<Map<String, Object>> checkActiveUser(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         try {
-            // Call the method from UserDAO to check if there are active users
-            boolean hasActiveUsers = userDAO.hasActiveUser();
+            // Signed in means the request carries a valid session token; no database involved
+            boolean hasActiveUsers = sessionTokens.resolve(authorization) != null;
         
             Map<String, Object> response = new HashMap<>();
             response.put("hasActiveUsers", hasActiveUsers);
@@ -429,18 +429,18 @@ public class UserController {
     }
 
     @GetMapping("/userEmail")
-    public ResponseEntity<Map<String, Object>> getActiveUserEmail() {
+    public ResponseEntity<Map<String, Object>> getActiveUserEmail(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         try {
-            // Call the method from UserDAO to get the email of the user with status_id = 2
-            String email = userDAO.getUserEmailByStatusId();
+            SessionTokens.Session session = sessionTokens.resolve(authorization);
+            User user = session == null ? null : userDAO.getUserProfileById(session.userId());
         
-            if (email == null) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "No active user found with status_id = 2"));
+                    .body(Map.of("error", "No active user found"));
             }
         
             Map<String, Object> response = new HashMap<>();
-            response.put("email", email);
+            response.put("email", user.getEmail());
         
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -453,12 +453,13 @@ public class UserController {
 
 
     @GetMapping("/profileLoad")
-    public ResponseEntity<Map<String, Object>> getActiveUserProfile() {
+    public ResponseEntity<Map<String, Object>> getActiveUserProfile(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
     try {
-        // Get active user ID
-        Integer activeUserId = userDAO.getActiveUserId();
+        // The signed-in user comes from the session token
+        SessionTokens.Session session = sessionTokens.resolve(authorization);
 
-        if (activeUserId != null) {
+        if (session != null) {
+            Integer activeUserId = session.userId();
             // Fetch the user's profile from the database
             User activeUser = userDAO.getUserProfileById(activeUserId);  
             
@@ -606,6 +607,8 @@ public class UserController {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to update password"));
             }
+        } catch (HashingBusyException e) {
+            return hashingBusy(e);
         } catch (Exception e) {
             System.out.println("UserController: Error in password reset: " + e.getMessage());
             e.printStackTrace();
@@ -622,7 +625,12 @@ public class UserController {
         String email = loginRequest.getEmail();
         String password = loginRequest.getPassword();
 
-        Map<String, Object> result = userDAO.validateUserLogin(email, password);
+        Map<String, Object> result;
+        try {
+            result = userDAO.validateUserLogin(email, password);
+        } catch (HashingBusyException e) {
+            return hashingBusy(e);
+        }
         boolean isValid = (boolean) result.get("isValid");
         
         System.out.println("Login validation result: " + isValid);
@@ -647,6 +655,7 @@ public class UserController {
             response.put("firstName", user.getFirstName());
             response.put("lastName", user.getLastName());
             response.put("isAdmin", true);
+            response.put("token", sessionTokens.issue(user));
 
             return ResponseEntity.ok(response);
         } else {
@@ -724,13 +733,15 @@ public class UserController {
 
     // Helper method to verify if request is from an admin
     private boolean isAdminRequest(String authHeader) {
-
-        return authHeader != null && authHeader.startsWith("Bearer ");
+        SessionTokens.Session session = sessionTokens.resolve(authHeader);
+        return session != null && session.admin();
     }
 
-
-    private String generateJwtToken(User user) {
-
-        return "dummy_token_" + user.getUserId() + "_" + (user.isAdmin() ? "admin" : "user");
+    // Password hashing pool is full: tell the client to retry shortly rather than queue more work
+    private ResponseEntity<?> hashingBusy(HashingBusyException e) {
+        System.out.println("UserController: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of("error", e.getMessage()));
     }
-}
\ No newline at end of file
+}
@@ -13,21 +13,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class UserDAO {
     private final JdbcTemplate jdbcTemplate;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     
     @Autowired
     private EmailService emailService;
 
     @Autowired
-    public UserDAO(JdbcTemplate jdbcTemplate) {
+    public UserDAO(JdbcTemplate jdbcTemplate, PasswordHasher passwordHasher) {
         this.jdbcTemplate = jdbcTemplate;
-        this.passwordEncoder = new BCryptPasswordEncoder();
+        this.passwordHasher = passwordHasher;
     }
 
     public List<User> getAllUser() {
@@ -58,19 +57,6 @@ public class UserDAO {
         }
     }
 
-    public String getUserEmailByStatusId() {
-        try {
-            // Query to get the email of the user whose status_id is 1 (active)
-            String query = "SELECT email FROM user WHERE status_id = 1";
-            return jdbcTemplate.queryForObject(query, String.class);
-        } catch (Exception e) {
-            System.out.println("UserDAO: Error retrieving email where status_id = 1: " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        }
-    }
-    
-
     public User getUserProfileById(Integer id) {
         try {
             String query = "SELECT * FROM user WHERE user_id = ?";
@@ -149,7 +135,7 @@ public class UserDAO {
         user.setVerificationCode(verificationCode);
         
         // Encrypt password
-        String encryptedPassword = passwordEncoder.encode(user.getPassword());
+        String encryptedPassword = passwordHasher.encode(user.getPassword());
         
         String sql = "INSERT INTO user (password, first_name, last_name, " +
                      "email, status_id, promotion_subscription, verification_code, " +
@@ -248,29 +234,13 @@ public class UserDAO {
         }
     }
 
-    public boolean updateUserDetails(String email, String newFirstName, String newLastName, Boolean promotionSubscription) {
+    public boolean updateUserDetails(int userId, String newFirstName, String newLastName, Boolean promotionSubscription) {
         try {
-            // Fetch the user by email
-            User user = getUserByEmail(email);
-            
-            // Check if the user exists
-            if (user != null) {
+            String updateQuery = "UPDATE user SET first_name = ?, last_name = ?, promotion_subscription = ? WHERE user_id = ?";
 
-                String updateQuery = "UPDATE user SET first_name = ?, last_name = ?, promotion_subscription = ? WHERE email = ?";
-                
-                // Execute the update query
-                int rowsAffected = jdbcTemplate.update(updateQuery, newFirstName, newLastName, promotionSubscription, email);
-                
-                // Check if the update was successful
-                if (rowsAffected > 0) {
-                    return true; // Successfully updated
-                } else {
-                    return false; // No rows affected, something went wrong
-                }
-            }
-            
-            // If user is not found, return false
-            return false;
+            // Execute the update query; no rows means the user doesn't exist
+            int rowsAffected = jdbcTemplate.update(updateQuery, newFirstName, newLastName, promotionSubscription, userId);
+            return rowsAffected > 0;
         } catch (Exception e) {
 
             System.out.println("UserDAO: Error in updateUserDetails: " + e.getMessage());
@@ -301,9 +271,9 @@ public class UserDAO {
             String storedPassword = jdbcTemplate.queryForObject(query, String.class, userId);
             
             // Verify current password
-            if (passwordEncoder.matches(currentPassword, storedPassword)) {
+            if (passwordHasher.matches(currentPassword, storedPassword)) {
                 // Encrypt new password
-                String encryptedPassword = passwordEncoder.encode(newPassword);
+                String encryptedPassword = passwordHasher.encode(newPassword);
                 
                 // Update password
                 String updateQuery = "UPDATE user SET password = ? WHERE user_id = ?";
@@ -312,6 +282,8 @@ public class UserDAO {
                 return rowsAffected > 0;
             }
             return false;
+        } catch (HashingBusyException e) {
+            throw e;
         } catch (Exception e) {
             System.out.println("UserDAO: Error updating password: " + e.getMessage());
             e.printStackTrace();
@@ -348,19 +320,17 @@ public class UserDAO {
                 boolean isAdmin = (boolean) results.get(0).get("is_admin");
                 
                 // Verify password using BCrypt
-                boolean passwordMatches = passwordEncoder.matches(password, storedPassword);
+                boolean passwordMatches = passwordHasher.matches(password, storedPassword);
                 
                 if (passwordMatches) {
                     result.put("isValid", true);
                     result.put("isAdmin", isAdmin);
-                    
-                    // This update happens for real users logging in, not during account creation
-                    query = "UPDATE user SET status_id = 1 WHERE email = ?";
-                    jdbcTemplate.update(query, email);
                 }
             }
             
             return result;
+        } catch (HashingBusyException e) {
+            throw e;
         } catch (Exception e) {
             System.out.println("Error during login validation: " + e.getMessage());
             e.printStackTrace();
@@ -370,51 +340,6 @@ public class UserDAO {
         }
     }
 
-    public boolean hasActiveUser() {
-        try {
-            // Query to check if there are any active users (status_id = 1)
-            String query = "SELECT COUNT(*) FROM user WHERE status_id = 1";
-            
-            // Get the count of active users
-            int activeUserCount = jdbcTemplate.queryForObject(query, Integer.class);
-    
-            // If there is at least one active user, return true
-            return activeUserCount > 0;
-        } catch (Exception e) {
-            System.out.println("UserDAO: Error in hasActiveUser: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    public Integer getActiveUserId() {
-        try {
-          
-            String query = "SELECT user_id FROM user WHERE status_id = 1";  
-            
-
-            return jdbcTemplate.queryForObject(query, Integer.class);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-    
-    public boolean logoutUser(String email) {
-        try {
-            // Update user status to inactive
-            String query = "UPDATE user SET status_id = 2 WHERE email = ?";
-            int rowsAffected = jdbcTemplate.update(query, email);
-            
-            return rowsAffected > 0;
-        } catch (Exception e) {
-            System.out.println("UserDAO: Error in logoutUser: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
-    }
-    
     public boolean updateUserAddress(int userId, String streetAddress, String city, String state, String zipCode) {
         try {
             String query = "UPDATE user SET street_address = ?, city = ?, state = ?, zip_code = ? WHERE user_id = ?";
@@ -452,13 +377,15 @@ public class UserDAO {
     public boolean updatePasswordAfterReset(String email, String newPassword) {
         try {
             // Encrypt the new password
-            String encryptedPassword = passwordEncoder.encode(newPassword);
+            String encryptedPassword = passwordHasher.encode(newPassword);
             
             // Update the password and clear the verification code
             String updateQuery = "UPDATE user SET password = ?, verification_code = NULL WHERE email = ?";
             int rowsAffected = jdbcTemplate.update(updateQuery, encryptedPassword, email);
             
             return rowsAffected > 0;
+        } catch (HashingBusyException e) {
+            throw e;
         } catch (Exception e) {
             System.out.println("UserDAO: Error in updatePasswordAfterReset: " + e.getMessage());
             e.printStackTrace();
@@ -475,7 +402,7 @@ public class UserDAO {
             
             if (adminCount == 0) {
                 // No admin exists, create one
-                String encryptedPassword = passwordEncoder.encode(password);
+                String encryptedPassword = passwordHasher.encode(password);
                 
                 String insertSql = "INSERT INTO user (password, first_name, last_name, email, status_id, is_admin) " +
                                    "VALUES (?, ?, ?, ?, 1, TRUE)";
@@ -534,7 +461,7 @@ public class UserDAO {
     public boolean createAdminAccount(User user) {
         try {
             // Encrypt password
-            String encryptedPassword = passwordEncoder.encode(user.getPassword());
+            String encryptedPassword = passwordHasher.encode(user.getPassword());
             
 
             System.out.println("UserDAO: Creating admin account with email: " + user.getEmail() + 
@@ -0,0 +1,295 @@
+package cinema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Admission control for high-demand show times. Each signed-in customer who arrives gets a
+// signed queue token carrying their place in line; a token bucket per show moves the "now
+// serving" number forward at the configured rate, and no more than maxActive admitted
+// customers may be checking out at once. An admitted token books one order for the customer
+// it was issued to, within the checkout window. Joining and position checks never touch MySQL.
+@Component
+public class WaitingRoom {
+
+    public static final String TOKEN_HEADER = "X-Queue-Token";
+    private static final long TICK_MILLIS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TokenSigner tokenSigner;
+    private final long tokenTtlMillis;
+    private final long checkoutWindowMillis;
+    private final int maxActive;
+    private final ConcurrentHashMap<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService admitter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "waiting-room-admit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Queue for one show. Tokens from an earlier room (before a restart or re-enable) are rejected by epoch.
+    private static final class Room {
+        private final int showId;
+        private final long epoch;
+        private volatile double admitPerSecond;
+        private volatile TokenBucket bucket;
+        private final AtomicLong lastIssued = new AtomicLong();
+        private final AtomicLong admittedUpTo = new AtomicLong();
+        // Admitted places that may still book -> when their checkout window closes
+        private final ConcurrentHashMap<Long, Long> active = new ConcurrentHashMap<>();
+        // Places with an order in progress, so one token can't place two orders at once
+        private final Set<Long> checkingOut = ConcurrentHashMap.newKeySet();
+
+        private Room(int showId, long epoch, double admitPerSecond) {
+            this.showId = showId;
+            this.epoch = epoch;
+            setRate(admitPerSecond);
+        }
+
+        // Everyone keeps their place; only the rate changes
+        private void setRate(double admitPerSecond) {
+            this.bucket = new TokenBucket(Math.max(1, admitPerSecond), admitPerSecond);
+            this.admitPerSecond = admitPerSecond;
+        }
+    }
+
+    // Where a token stands in its show's line
+    public record Place(String token, int showId, long position, boolean admitted, long estimatedWaitSeconds) {
+    }
+
+    @Autowired
+    public WaitingRoom(JdbcTemplate jdbcTemplate, TokenSigner tokenSigner,
+                       @Value("${waiting-room.token-ttl-minutes:120}") long tokenTtlMinutes,
+                       @Value("${waiting-room.checkout-minutes:10}") long checkoutMinutes,
+                       @Value("${waiting-room.max-active:200}") int maxActive) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tokenSigner = tokenSigner;
+        this.tokenTtlMillis = TimeUnit.MINUTES.toMillis(tokenTtlMinutes);
+        this.checkoutWindowMillis = TimeUnit.MINUTES.toMillis(checkoutMinutes);
+        this.maxActive = maxActive;
+    }
+
+    @PostConstruct
+    public void start() {
+        admitter.scheduleAtFixedRate(this::admit, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        admitter.shutdownNow();
+    }
+
+    // Load the high-demand shows, e.g. at startup
+    public int loadHighDemandShows() {
+        jdbcTemplate.query("SELECT show_time_id, admit_per_second FROM high_demand_show", rs -> {
+            int showId = rs.getInt("show_time_id");
+            rooms.put(showId, new Room(showId, System.currentTimeMillis(), rs.getDouble("admit_per_second")));
+        });
+        System.out.println("WaitingRoom: Loaded " + rooms.size() + " high-demand show times");
+        return rooms.size();
+    }
+
+    // Put a show behind the waiting room, admitting admitPerSecond customers a second
+    public void enable(int showId, double admitPerSecond) {
+        if (admitPerSecond <= 0) {
+            throw new IllegalArgumentException("Admission rate must be positive");
+        }
+        jdbcTemplate.update("INSERT INTO high_demand_show (show_time_id, admit_per_second) VALUES (?, ?) "
+            + "ON DUPLICATE KEY UPDATE admit_per_second = VALUES(admit_per_second)", showId, admitPerSecond);
+        rooms.compute(showId, (id, room) -> {
+            if (room == null) {
+                return new Room(id, System.currentTimeMillis(), admitPerSecond);
+            }
+            room.setRate(admitPerSecond);
+            return room;
+        });
+    }
+
+    public boolean disable(int showId) {
+        jdbcTemplate.update("DELETE FROM high_demand_show WHERE show_time_id = ?", showId);
+        return rooms.remove(showId) != null;
+    }
+
+    public boolean isHighDemand(int showId) {
+        return rooms.containsKey(showId);
+    }
+
+    // Take a place in line for a customer. Returns null if the show isn't behind the waiting room.
+    public Place join(int showId, int customerId) {
+        Room room = rooms.get(showId);
+        if (room == null) {
+            return null;
+        }
+        long sequence = room.lastIssued.incrementAndGet();
+        String token = tokenSigner.sign(showId + ":" + room.epoch + ":" + sequence + ":" + customerId + ":" + System.currentTimeMillis());
+        return status(room, token, sequence);
+    }
+
+    // Current place of a token, or null if the token is invalid, expired, from an old queue,
+    // already used for an order or past its checkout window
+    public Place lookUp(String token) {
+        long[] parsed = parse(token);
+        if (parsed == null) {
+            return null;
+        }
+        Room room = rooms.get((int) parsed[0]);
+        if (room == null || room.epoch != parsed[1]) {
+            return null;
+        }
+        if (parsed[2] <= room.admittedUpTo.get() && !isActive(room, parsed[2])) {
+            return null;
+        }
+        return status(room, token, parsed[2]);
+    }
+
+    // Reserve the token for an order by this customer. Returns null if the order may go ahead:
+    // none of its shows has a waiting room, or the token is admitted to the one that does. Otherwise
+    // a 429 for a show the token isn't admitted to, or a 409 while the token has another order in
+    // progress. After a null, call finish with the same token once the order has been placed or refused
+    public ResponseEntity<Map<String, Object>> claim(List<Ticket> tickets, String token, int customerId) {
+        if (tickets == null || rooms.isEmpty()) {
+            return null;
+        }
+        Room claimed = null;
+        long[] parsed = null;
+        for (Ticket ticket : tickets) {
+            Room room = ticket == null ? null : rooms.get(ticket.getShowId());
+            if (room == null || room == claimed) {
+                continue;
+            }
+            parsed = parse(token);
+            boolean admitted = claimed == null && parsed != null && parsed[0] == room.showId && parsed[1] == room.epoch
+                && parsed[3] == customerId && isActive(room, parsed[2]);
+            if (!admitted) {
+                return refuse(room.showId, token, customerId);
+            }
+            claimed = room;
+        }
+        if (claimed == null) {
+            return null;
+        }
+        if (!claimed.checkingOut.add(parsed[2])) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "This place in line is already being used for another order.");
+            response.put("showId", claimed.showId);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        return null;
+    }
+
+    // Release a token claimed for an order. A token that booked seats is spent; otherwise the
+    // customer keeps their admission and may try again within the checkout window
+    public void finish(String token, boolean booked) {
+        long[] parsed = parse(token);
+        if (parsed == null) {
+            return;
+        }
+        Room room = rooms.get((int) parsed[0]);
+        if (room == null || room.epoch != parsed[1]) {
+            return;
+        }
+        if (booked) {
+            room.active.remove(parsed[2]);
+        }
+        room.checkingOut.remove(parsed[2]);
+    }
+
+    public Map<String, Object> getMetrics() {
+        List<Map<String, Object>> shows = new ArrayList<>();
+        for (Room room : rooms.values()) {
+            Map<String, Object> show = new HashMap<>();
+            show.put("showId", room.showId);
+            show.put("admitPerSecond", room.admitPerSecond);
+            show.put("joined", room.lastIssued.get());
+            show.put("admitted", room.admittedUpTo.get());
+            show.put("active", room.active.size());
+            show.put("waiting", room.lastIssued.get() - room.admittedUpTo.get());
+            shows.add(show);
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("shows", shows);
+        return metrics;
+    }
+
+    private Place status(Room room, String token, long sequence) {
+        long position = Math.max(0, sequence - room.admittedUpTo.get());
+        long waitSeconds = (long) Math.ceil(position / room.admitPerSecond);
+        return new Place(token, room.showId, position, position == 0, waitSeconds);
+    }
+
+    // Admitted, not yet used for an order, and still inside its checkout window
+    private static boolean isActive(Room room, long sequence) {
+        Long closesAt = room.active.get(sequence);
+        return closesAt != null && closesAt > System.currentTimeMillis();
+    }
+
+    // A 429 telling the customer to join, or to keep waiting, before booking this show
+    private ResponseEntity<Map<String, Object>> refuse(int showId, String token, int customerId) {
+        Place place = lookUp(token);
+        long[] parsed = parse(token);
+        boolean queued = place != null && place.showId() == showId && !place.admitted() && parsed[3] == customerId;
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", queued ? "Still waiting in line for this show." : "This show time needs a place in the waiting room.");
+        response.put("showId", showId);
+        response.put("joinUrl", "/api/waiting-room/shows/" + showId + "/join");
+        if (queued) {
+            response.put("position", place.position());
+            response.put("estimatedWaitSeconds", place.estimatedWaitSeconds());
+        }
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(queued ? Math.max(1, place.estimatedWaitSeconds()) : 1))
+            .body(response);
+    }
+
+    // showId, epoch, sequence and customer ID of a valid, unexpired token
+    private long[] parse(String token) {
+        String payload = tokenSigner.verify(token);
+        if (payload == null) {
+            return null;
+        }
+        String[] parts = payload.split(":");
+        if (parts.length != 5) {
+            return null;
+        }
+        try {
+            long issuedAt = Long.parseLong(parts[4]);
+            if (System.currentTimeMillis() - issuedAt > tokenTtlMillis) {
+                return null;
+            }
+            return new long[]{Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]), Integer.parseInt(parts[3])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Move each line forward at its rate, but only while fewer than maxActive admitted customers
+    // are still checking out. Places whose checkout window has closed make room for the next ones
+    private void admit() {
+        long now = System.currentTimeMillis();
+        for (Room room : rooms.values()) {
+            room.active.values().removeIf(closesAt -> closesAt <= now);
+            while (room.admittedUpTo.get() < room.lastIssued.get() && room.active.size() < maxActive
+                && room.bucket.tryAcquire(1)) {
+                room.active.put(room.admittedUpTo.incrementAndGet(), now + checkoutWindowMillis);
+            }
+        }
+    }
+}
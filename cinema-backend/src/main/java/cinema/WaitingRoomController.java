@@ -0,0 +1,122 @@
+package cinema;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/waiting-room")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = "Retry-After")
+public class WaitingRoomController {
+
+    private final WaitingRoom waitingRoom;
+    private final SessionTokens sessionTokens;
+
+    @Autowired
+    public WaitingRoomController(WaitingRoom waitingRoom, SessionTokens sessionTokens) {
+        this.waitingRoom = waitingRoom;
+        this.sessionTokens = sessionTokens;
+    }
+
+    // Take a place in line for a show as the signed-in customer. Shows without a waiting room admit straight away.
+    @PostMapping("/shows/{showId}/join")
+    public ResponseEntity<Map<String, Object>> join(@PathVariable int showId,
+                                                    @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        SessionTokens.Session session = sessionTokens.resolve(authorization);
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Log in to join the line."));
+        }
+        WaitingRoom.Place place = waitingRoom.join(showId, session.userId());
+        if (place == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("showId", showId);
+            response.put("admitted", true);
+            return ResponseEntity.ok(response);
+        }
+        System.out.println("WaitingRoomController: Customer " + session.userId() + " joined the line for show " + showId + " at position " + place.position());
+        return ResponseEntity.ok(toResponse(place));
+    }
+
+    // Where a token is in line. Poll this until admitted is true, then place one order with the token in the X-Queue-Token header.
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, Object>> status(@RequestHeader(value = WaitingRoom.TOKEN_HEADER, required = false) String headerToken,
+                                                      @RequestParam(value = "token", required = false) String paramToken) {
+        String token = headerToken != null ? headerToken : paramToken;
+        if (token == null || token.isBlank()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "Queue token is required."));
+        }
+        WaitingRoom.Place place = waitingRoom.lookUp(token);
+        if (place == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Queue token is invalid, expired or already used. Join the line again."));
+        }
+        return ResponseEntity.ok(toResponse(place));
+    }
+
+    // Admin: put a show time behind the waiting room, or change how fast it admits
+    @PutMapping("/admin/shows/{showId}")
+    public ResponseEntity<?> enable(@PathVariable int showId, @RequestParam double admitPerSecond,
+                                    @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!isAdminRequest(authorization)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not authorized"));
+        }
+        try {
+            waitingRoom.enable(showId, admitPerSecond);
+            System.out.println("WaitingRoomController: Show " + showId + " admits " + admitPerSecond + " customers a second");
+            return ResponseEntity.ok(Map.of("showId", showId, "admitPerSecond", admitPerSecond));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            System.out.println("WaitingRoomController: Error enabling waiting room: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Failed to enable waiting room."));
+        }
+    }
+
+    // Admin: let everyone book the show directly again
+    @DeleteMapping("/admin/shows/{showId}")
+    public ResponseEntity<?> disable(@PathVariable int showId,
+                                     @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!isAdminRequest(authorization)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not authorized"));
+        }
+        try {
+            if (!waitingRoom.disable(showId)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Show has no waiting room."));
+            }
+            return ResponseEntity.ok(Map.of("message", "Waiting room removed for show " + showId));
+        } catch (Exception e) {
+            System.out.println("WaitingRoomController: Error disabling waiting room: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Failed to disable waiting room."));
+        }
+    }
+
+    private boolean isAdminRequest(String authorization) {
+        SessionTokens.Session session = sessionTokens.resolve(authorization);
+        return session != null && session.admin();
+    }
+
+    private Map<String, Object> toResponse(WaitingRoom.Place place) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", place.token());
+        response.put("showId", place.showId());
+        response.put("position", place.position());
+        response.put("admitted", place.admitted());
+        response.put("estimatedWaitSeconds", place.estimatedWaitSeconds());
+        return response;
+    }
+}
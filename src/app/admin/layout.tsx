@@ -22,19 +22,16 @@ export default function AdminLayout({
   // Add a logout function
   const handleLogout = async () => {
     try {
-      // Get the current user from localStorage
-      const userStr = localStorage.getItem('user');
-      if (userStr) {
-        const user = JSON.parse(userStr);
-        const email = user.email;
-        
+      // Get the current session from localStorage
+      const token = localStorage.getItem('authToken');
+      if (token) {
         // Call the backend logout API
         await fetch("http://localhost:8080/api/users/logout", {
           method: "POST",
           headers: {
             "Content-Type": "application/json",
+            "Authorization": `Bearer ${token}`,
           },
-          body: JSON.stringify({ email }),
         });
       }
       
@@ -54,6 +54,7 @@ export default function AdminLoginPage() {
       
       // Set the admin data
       localStorage.setItem("user", JSON.stringify(adminUser));
+      localStorage.setItem("authToken", data.token);
       
       // Use the simplest possible redirect
       document.location.href = "/admin";
@@ -1,15 +1,11 @@
 import { NextRequest, NextResponse } from 'next/server';
 
 export async function POST(request: NextRequest) {
-  let bookingId: number | null = null; // Keep track of the created booking ID
-
   try {
     const data = await request.json();
     const authToken = request.headers.get('Authorization'); // Get token from request
-    
-    // Extract promotion details from the request data
-    const appliedDiscount = data.appliedDiscount;
-    const promoCode = data.promoCode;
+    const queueToken = request.headers.get('X-Queue-Token'); // Waiting room place for high-demand shows
+    const idempotencyKey = request.headers.get('Idempotency-Key'); // Same key on a retry, so the order is placed once
     
     if (!authToken) {
       return NextResponse.json({ error: 'Unauthorized: Missing token' }, { status: 401 });
@@ -21,114 +17,66 @@ export async function POST(request: NextRequest) {
         return NextResponse.json({ error: 'Invalid request data: Missing customerId or tickets' }, { status: 400 });
     }
 
-    // Step 1: Create a single Booking Shell
-    console.log("Step 1: Creating booking shell for customer:", data.customerId);
-    const bookingShellResponse = await fetch('http://localhost:8080/api/bookings/add', {
-      method: 'POST',
-      headers: {
-        'Content-Type': 'application/json',
-        'Authorization': authToken // Pass token
-      },
-      body: JSON.stringify({
-        customerId: data.customerId, 
-      })
-    });
-
-    if (!bookingShellResponse.ok) {
-      const errorText = await bookingShellResponse.text();
-      console.error(`Booking shell creation failed: ${bookingShellResponse.status} - ${errorText}`);
-      throw new Error(`Failed to create booking shell: ${bookingShellResponse.status} - ${errorText}`);
-    }
-
-    bookingId = await bookingShellResponse.json(); // Expecting the integer booking_id
-    if (typeof bookingId !== 'number' || bookingId <= 0) {
-       console.error(`Invalid booking ID received: ${bookingId}`);
-       throw new Error(`Invalid booking ID received from backend: ${bookingId}`);
-    }
-    console.log(`Successfully created booking shell with ID: ${bookingId}`);
-
-    // Step 2: Add each Ticket individually, associating with the bookingId
-    console.log(`Step 2: Adding ${data.tickets.length} tickets for booking ID: ${bookingId}`);
-    const ticketPromises = data.tickets.map(async (ticket: any, index: number) => {
-       if (!ticket.showId || !ticket.seatLabel || !ticket.ticketType || ticket.price == null) {
-           console.warn(`Skipping invalid ticket data received at index ${index}:`, ticket);
+    const ticketPayloads = data.tickets.map((ticket: any, index: number) => {
+       if (!ticket.showId || !ticket.seatLabel || !ticket.ticketType) {
+           console.warn(`Invalid ticket data received at index ${index}:`, ticket);
            throw new Error(`Invalid ticket data received for ticket at index ${index}.`);
        }
 
-       // Calculate final price based on potential discount
-       let finalPrice = ticket.price;
-       if (typeof appliedDiscount === 'number' && appliedDiscount > 0 && appliedDiscount <= 100) {
-           const discountMultiplier = 1 - (appliedDiscount / 100);
-           finalPrice = parseFloat((ticket.price * discountMultiplier).toFixed(2));
-           console.log(`Applying discount ${appliedDiscount}% to ticket ${index + 1}. Original: ${ticket.price}, Final: ${finalPrice}`);
-       } else {
-           console.log(`No valid discount applied to ticket ${index + 1}. Price: ${finalPrice}`);
-       }
-
-      // Construct the payload for the backend /api/tickets/add endpoint
-      const ticketPayload = {
-        bookingId: bookingId,
+      // The backend prices each ticket from the show time and applies the promotion code
+      return {
         showId: ticket.showId,
         ticketType: ticket.ticketType.toLowerCase(),
-        price: finalPrice, // Use the calculated final price
         seatNumber: ticket.seatLabel,
-
       };
-      console.log(`Adding ticket ${index + 1}:`, JSON.stringify(ticketPayload, null, 2));
-
-      // Fetch call to backend /api/tickets/add
-      const ticketResponse = await fetch('http://localhost:8080/api/tickets/add', {
-        method: 'POST',
-        headers: {
-          'Content-Type': 'application/json',
-          'Authorization': authToken
-        },
-        body: JSON.stringify(ticketPayload)
-      });
-
-      if (!ticketResponse.ok) {
-        const errorText = await ticketResponse.text();
-        console.error(`Ticket creation failed for ticket ${index + 1} (booking ${bookingId}): ${ticketResponse.status} - ${errorText}`);
-        throw new Error(`Failed to create ticket ${index + 1} for booking ${bookingId}: ${ticketResponse.status} - ${errorText}`);
-      }
-
-      const ticketResult = await ticketResponse.text();
-      console.log(`Ticket ${index + 1} added successfully for booking ${bookingId}. Response: ${ticketResult}`);
-      return ticketResult;
     });
 
-    // Wait for all ticket additions to complete
-    await Promise.all(ticketPromises);
-    console.log(`All tickets added successfully for booking ID: ${bookingId}`);
+    // A card that isn't saved is sent for the backend to validate
+    const newCard = data.paymentInfo?.type === 'new' ? data.paymentInfo.details : null;
 
-    // Step 3: Confirm the entire Booking
-    console.log(`Step 3: Confirming booking ID: ${bookingId}`);
-    const confirmResponse = await fetch(`http://localhost:8080/api/bookings/confirm/${bookingId}`, {
-      method: 'PUT',
+    // Booking, tickets and confirmation in a single call (one transaction on the backend)
+    const checkoutResponse = await fetch('http://localhost:8080/api/checkout', {
+      method: 'POST',
       headers: {
-        'Authorization': authToken // Pass token
-      }
+        'Content-Type': 'application/json',
+        'Authorization': authToken, // Pass token
+        ...(queueToken ? { 'X-Queue-Token': queueToken } : {}),
+        ...(idempotencyKey ? { 'Idempotency-Key': idempotencyKey } : {}),
+        // So the backend rate-limits the customer's address rather than this server's
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {})
+      },
+      body: JSON.stringify({
+        customerId: data.customerId,
+        cardId: data.paymentInfo?.type === 'saved' ? data.paymentInfo.id : null,
+        card: newCard ? {
+          cardholderName: newCard.cardholderName,
+          cardNumber: newCard.cardNumber,
+          cvv: newCard.cvv,
+          expirationDate: `${newCard.expiryMonth}/${String(newCard.expiryYear).slice(-2)}`
+        } : null,
+        promoCode: data.promoCode || null,
+        tickets: ticketPayloads
+      })
     });
 
-    if (!confirmResponse.ok) {
-      const errorText = await confirmResponse.text();
-      console.error(`Booking confirmation failed for ${bookingId}: ${confirmResponse.status} - ${errorText}`);
-      throw new Error(`Failed to confirm booking ${bookingId}: ${errorText}`);
+    if (!checkoutResponse.ok) {
+      const errorText = await checkoutResponse.text();
+      console.error(`Checkout failed: ${checkoutResponse.status} - ${errorText}`);
+      const retryAfter = checkoutResponse.headers.get('Retry-After');
+      return NextResponse.json({ error: errorText }, {
+        status: checkoutResponse.status,
+        headers: retryAfter ? { 'Retry-After': retryAfter } : undefined
+      });
     }
-    console.log(`Booking ${bookingId} confirmed successfully.`);
+
+    const order = await checkoutResponse.json();
+    console.log(`Booking ${order.bookingId} confirmed successfully.`);
     
-    // Return success with the single booking ID
-    return NextResponse.json({ success: true, bookingId: bookingId });
+    return NextResponse.json({ success: true, bookingId: order.bookingId, order });
 
   } catch (error) {
     console.error('Error processing booking:', error);
-    
-
-    if (bookingId) {
-      console.warn(`Attempting to cancel potentially incomplete booking ID: ${bookingId} due to error.`);
-    }
-
     const errorMessage = error instanceof Error ? error.message : 'Unknown error occurred during booking process';
     return NextResponse.json({ error: errorMessage }, { status: 500 });
   }
-} 
\ No newline at end of file
+}
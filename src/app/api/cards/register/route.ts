@@ -9,6 +9,8 @@ export async function POST(request: Request) {
       method: 'POST',
       headers: {
         'Content-Type': 'application/json',
+        ...(request.headers.get('Authorization') ? { 'Authorization': request.headers.get('Authorization') as string } : {}),
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
       },
       body: JSON.stringify(cardData),
     })
@@ -23,6 +23,7 @@ export async function GET(
       headers: {
         'Accept': 'application/json',
         'Content-Type': 'application/json',
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
       },
     });
     
@@ -114,6 +115,7 @@ export async function DELETE(
       headers: {
         'Accept': 'application/json',
         'Content-Type': 'application/json',
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
       },
     });
     
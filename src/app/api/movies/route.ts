@@ -6,16 +6,26 @@ import fetch from 'node-fetch';
 
 const JAVA_API_URL = 'http://localhost:8080/api/movies';
 
+// Paging, filter and field-projection parameters understood by the backend listing
+const LISTING_PARAMS = ['after', 'limit', 'status', 'category', 'rating', 'fields'];
+
 // Add GET handler
-export async function GET() {
+export async function GET(request: NextRequest) {
   try {
-    console.log('Attempting to fetch movies from:', JAVA_API_URL);
+    const params = new URLSearchParams();
+    for (const name of LISTING_PARAMS) {
+      const value = request.nextUrl.searchParams.get(name);
+      if (value !== null) params.set(name, value);
+    }
+    const url = params.toString() ? `${JAVA_API_URL}?${params}` : JAVA_API_URL;
+    console.log('Attempting to fetch movies from:', url);
     
-    const response = await fetch(JAVA_API_URL, {
+    const response = await fetch(url, {
       method: 'GET',
       headers: {
         'Accept': 'application/json',
         'Content-Type': 'application/json',
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
       },
       cache: 'no-store' // Disable caching to always get fresh data
     });
@@ -28,7 +38,9 @@ export async function GET() {
       throw new Error(`Failed to fetch movies: ${errorText}`);
     }
     
-    const movies = await response.json();
+    const body = await response.json();
+    // A paged listing wraps the movies with the cursor for the next page
+    const movies = Array.isArray(body) ? body : body.movies;
     console.log('Raw movies from backend:', movies.map(m => ({
       title: m.title, 
       status: m.status,
@@ -60,6 +72,9 @@ export async function GET() {
     console.log('Transformed movies with status for frontend:', 
       transformedMovies.map(m => ({title: m.title, status: m.status, category: m.category}))
     );
+    if (!Array.isArray(body)) {
+      return NextResponse.json({ movies: transformedMovies, nextCursor: body.nextCursor });
+    }
     return NextResponse.json(transformedMovies);
   } catch (error) {
     console.error('Detailed error:', error);
@@ -93,6 +108,7 @@ export async function POST(request: NextRequest) {
       method: 'POST',
       headers: {
         'Content-Type': 'application/json',
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
       },
       body: JSON.stringify(movieData),
     });
@@ -24,6 +24,7 @@ export async function GET(request: NextRequest, context: RouteContext) {
       headers: {
 
         'Content-Type': 'application/json',
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
       },
     });
 
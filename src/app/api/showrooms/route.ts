@@ -1,12 +1,13 @@
 import { NextResponse } from 'next/server';
 
-export async function GET() {
+export async function GET(request: Request) {
   try {
 
     const response = await fetch('http://localhost:8080/api/showrooms', {
       method: 'GET',
       headers: {
         'Content-Type': 'application/json',
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
       },
     });
 
@@ -20,6 +20,9 @@ export async function DELETE(
 
     const response = await fetch(`${JAVA_API_URL}/showtimes/delete/${showTimeId}`, {
       method: 'DELETE',
+      headers: {
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
+      },
     });
 
     // Check if the backend deletion was successful
@@ -18,6 +18,9 @@ export async function DELETE(
  
     const response = await fetch(`http://localhost:8080/api/showtimes/movie/${id}`, {
       method: 'DELETE',
+      headers: {
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
+      },
     });
 
     if (!response.ok) {
@@ -32,6 +32,7 @@ export async function GET(
       headers: {
         'Accept': 'application/json',
         'Content-Type': 'application/json',
+        ...(request.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': request.headers.get('x-forwarded-for') as string } : {}),
       },
       cache: 'no-store' // Disable caching
     });
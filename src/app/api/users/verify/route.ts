@@ -10,6 +10,7 @@ export async function POST(req: Request) {
       headers: {
         'Content-Type': 'application/json',
         'Accept': 'application/json',
+        ...(req.headers.get('x-forwarded-for') ? { 'X-Forwarded-For': req.headers.get('x-forwarded-for') as string } : {}),
       },
       body: JSON.stringify(verificationData),
     })
@@ -1,6 +1,6 @@
 "use client"
 
-import { useState, useEffect } from "react"
+import { useState, useEffect, useRef } from "react"
 import { OrderHeader } from "@/components/order/OrderHeader"
 import { OrderSummary } from "@/components/order/OrderSummary"
 import { OrderTotal } from "@/components/order/OrderTotal"
@@ -43,6 +43,11 @@ export default function OrderPage() {
   const [userData, setUserData] = useState<any>(null)
   const [userCards, setUserCards] = useState<any[]>([])
   const [isSubmitting, setIsSubmitting] = useState(false)
+  // One key per order attempt, kept across retries so a resubmitted order isn't booked twice
+  const idempotencyKey = useRef<string | null>(null)
+  // Place in a high-demand show's waiting room, kept so a retry doesn't go to the back of the line
+  const queuePlace = useRef<{ showId: number; token: string } | null>(null)
+  const [queueStatus, setQueueStatus] = useState<string | null>(null)
   const router = useRouter()
   
   // Load tickets from localStorage on component mount
@@ -156,6 +161,52 @@ export default function OrderPage() {
     return tickets.reduce((total, ticket) => total + ticket.price * ticket.quantity, 0)
   }
 
+  // High-demand shows sit behind a waiting room: take a place in line and wait until admitted.
+  // Returns the queue token to book with, or null when the show can be booked directly
+  const waitForAdmission = async (showId: number): Promise<string | null> => {
+    const queueHeaders = (token: string) => ({ 'X-Queue-Token': token });
+    let place: any = null;
+
+    if (queuePlace.current?.showId === showId) {
+      const statusResponse = await fetch('http://localhost:8080/api/waiting-room/status', {
+        headers: queueHeaders(queuePlace.current.token)
+      });
+      // 404 once the token has been used or its checkout window has closed
+      place = statusResponse.ok ? await statusResponse.json() : null;
+    }
+    if (!place) {
+      const joinResponse = await fetch(`http://localhost:8080/api/waiting-room/shows/${showId}/join`, {
+        method: 'POST',
+        headers: { 'Authorization': `Bearer ${localStorage.getItem("authToken")}` }
+      });
+      if (!joinResponse.ok) {
+        throw new Error(`Could not get a place in line for this show (${joinResponse.status}).`);
+      }
+      place = await joinResponse.json();
+    }
+    if (!place.token) {
+      queuePlace.current = null;
+      return null;
+    }
+    queuePlace.current = { showId, token: place.token };
+
+    while (!place.admitted) {
+      setQueueStatus(`This show is in high demand. You are number ${place.position} in line (about ${place.estimatedWaitSeconds}s).`);
+      await new Promise(resolve => setTimeout(resolve, Math.min(5, Math.max(1, place.estimatedWaitSeconds)) * 1000));
+      const statusResponse = await fetch('http://localhost:8080/api/waiting-room/status', {
+        headers: queueHeaders(place.token)
+      });
+      if (!statusResponse.ok) {
+        queuePlace.current = null;
+        setQueueStatus(null);
+        throw new Error("Your place in line has expired. Please try again.");
+      }
+      place = await statusResponse.json();
+    }
+    setQueueStatus(null);
+    return place.token;
+  }
+
   const handleCheckoutSubmit = async (data: SubmitData) => {
     console.log('Checkout form data received in OrderPage:', data); // Includes promoCode and appliedDiscount 
 
@@ -193,8 +244,8 @@ export default function OrderPage() {
         return {
           showId: showIdNum, 
           seatLabel: ticket.movie.seat,
-          ticketType: ticket.type.toLowerCase(),
-          price: ticket.price // Send the final price for this ticket
+          ticketType: ticket.type.toLowerCase()
+          // No price: the backend prices each ticket from the show time
         };
       });
       console.log("Formatted ticket data for API:", ticketData);
@@ -204,7 +255,9 @@ export default function OrderPage() {
               type: 'new',
               details: {
                 cardholderName: data.newCardDetails.cardholderName,
-                cardNumber: data.newCardDetails.cardNumber.slice(-4), 
+                // The backend validates the card before charging it; it is only stored if saveCard is set
+                cardNumber: data.newCardDetails.cardNumber,
+                cvv: data.newCardDetails.cvv,
                 expiryMonth: data.newCardDetails.expiryMonth,
                 expiryYear: data.newCardDetails.expiryYear,
                 saveCard: data.newCardDetails.saveCard
@@ -212,12 +265,21 @@ export default function OrderPage() {
             }
           : null;
 
+      // Every ticket in the order is for the show picked on the movie page
+      const queueToken = await waitForAdmission(ticketData[0].showId);
+
+      if (!idempotencyKey.current) {
+        idempotencyKey.current = crypto.randomUUID();
+      }
+
       // Send the data to our API
       const response = await fetch('/api/bookings', {
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',
-          'Authorization': `Bearer ${localStorage.getItem("authToken")}`
+          'Authorization': `Bearer ${localStorage.getItem("authToken")}`,
+          'Idempotency-Key': idempotencyKey.current,
+          ...(queueToken ? { 'X-Queue-Token': queueToken } : {})
         },
         body: JSON.stringify({
           customerId: userId,
@@ -230,6 +292,12 @@ export default function OrderPage() {
         })
       });
 
+      // The server answered, so a changed order is a new attempt. After a 5xx the order may
+      // still have gone through, so the retry keeps the key and gets the original outcome
+      if (response.status < 500) {
+        idempotencyKey.current = null;
+      }
+
       if (!response.ok) {
         const error = await response.text();
         console.error("Server error:", error);
@@ -245,6 +313,8 @@ export default function OrderPage() {
 
       const result = await response.json();
       console.log('Booking successful:', result);
+      // The queue token books one order
+      queuePlace.current = null;
 
       // Clear checkout data
       setIsCheckoutOpen(false);
@@ -573,6 +643,7 @@ export default function OrderPage() {
         onSubmit={handleCheckoutSubmit}
         userData={userData}
         userCards={userCards}
+        statusMessage={queueStatus}
       />
     </>
   )
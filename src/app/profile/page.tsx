@@ -2,7 +2,7 @@
 
 import { useState, useEffect } from "react"
 import { useRouter } from 'next/navigation'
-import { isAuthenticated } from "@/utils/auth"
+import { isAuthenticated, getAuthToken } from "@/utils/auth"
 import { Card, CardContent, CardDescription, CardFooter, CardHeader, CardTitle } from "@/components/ui/card"
 import { Button } from "@/components/ui/button"
 import { Input } from "@/components/ui/input"
@@ -149,6 +149,7 @@ export default function Profile() {
         method: "PUT",
         headers: {
           "Content-Type": "application/json",
+          "Authorization": `Bearer ${getAuthToken()}`,
         },
         body: JSON.stringify({
           email: profile.email,
@@ -304,6 +305,7 @@ export default function Profile() {
         method: 'PUT',
         headers: {
           'Content-Type': 'application/json',
+          "Authorization": `Bearer ${getAuthToken()}`,
         },
         body: JSON.stringify({
           oldPassword: currentPassword,
@@ -498,6 +500,7 @@ export default function Profile() {
         method: "POST",
         headers: {
           "Content-Type": "application/json",
+          "Authorization": `Bearer ${getAuthToken()}`,
         },
         body: JSON.stringify({
           cardholderName: newCard.cardholderName,
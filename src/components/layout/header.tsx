@@ -1,7 +1,7 @@
 import { useState, useEffect } from "react"
 import Link from "next/link"
 import { Button } from "@/components/ui/button"
-import { logout, getUser, isAuthenticated } from "@/utils/auth" 
+import { logout, getUser, isAuthenticated, getAuthToken } from "@/utils/auth" 
 
 export function Header() {
   const [isSearchExpanded, setIsSearchExpanded] = useState(false)
@@ -25,7 +25,9 @@ export function Header() {
     // Then verify with the server
     const checkActiveUser = async () => {
       try {
-        const response = await fetch('http://localhost:8080/api/users/active');
+        const response = await fetch('http://localhost:8080/api/users/active', {
+          headers: { "Authorization": `Bearer ${getAuthToken()}` }
+        });
         if (response.ok) {
           const data = await response.json();
           setIsActiveUser(data.hasActiveUsers && isAuthenticated());
@@ -113,6 +113,7 @@ interface CheckoutFormProps {
   onSubmit: (data: SubmitData) => void
   userData: UserData | null
   userCards: SavedCard[]
+  statusMessage?: string | null // e.g. the customer's place in a waiting room while the order waits
 }
 
 const maskCardNumber = (cardNumber: string) => {
@@ -125,7 +126,8 @@ export function CheckoutForm({
     total, 
     onSubmit, 
     userData, 
-    userCards 
+    userCards,
+    statusMessage
 }: CheckoutFormProps) {
   const [isSubmitting, setIsSubmitting] = useState(false)
   const [selectedPaymentMethod, setSelectedPaymentMethod] = useState<string>('new')
@@ -338,6 +340,7 @@ export function CheckoutForm({
         <DialogHeader>
           <DialogTitle className="text-2xl font-semibold">Complete Your Purchase</DialogTitle>
           <DialogDescription>Review your details and confirm payment.</DialogDescription>
+          {statusMessage ? <p className="text-sm font-medium text-amber-600">{statusMessage}</p> : null}
         </DialogHeader>
 
         <Form {...form}>
@@ -1,5 +1,5 @@
 import { useState, useEffect, useCallback } from "react";
-import { isAuthenticated } from "@/utils/auth";
+import { isAuthenticated, getAuthToken } from "@/utils/auth";
 
 interface PaymentCard {
   id: number;
@@ -24,7 +24,9 @@ export function usePaymentCards() {
         return;
       }
       
-      const response = await fetch("http://localhost:8080/api/cards/activeCards");
+      const response = await fetch("http://localhost:8080/api/cards/activeCards", {
+        headers: { "Authorization": `Bearer ${getAuthToken()}` }
+      });
       
       if (!response.ok) {
         throw new Error("Failed to fetch payment cards");
@@ -1,6 +1,6 @@
 import { useState, useEffect, useCallback } from "react";
 import { usePaymentCards } from "./usePaymentCards";
-import { isAuthenticated } from "@/utils/auth";
+import { isAuthenticated, getAuthToken } from "@/utils/auth";
 
 interface UserProfile {
   firstName: string;
@@ -30,7 +30,9 @@ export function useUserProfile() {
       }
       
       // Continue with profile fetch if authenticated
-      const response = await fetch("http://localhost:8080/api/users/profileLoad");
+      const response = await fetch("http://localhost:8080/api/users/profileLoad", {
+        headers: { "Authorization": `Bearer ${getAuthToken()}` }
+      });
       
       if (!response.ok) {
         throw new Error("Failed to fetch profile data");
@@ -32,6 +32,7 @@ export const getAuthToken = () => {
       // Get user from storage before clearing
       const userJson = sessionStorage.getItem("user") || localStorage.getItem("user");
       const user = userJson ? JSON.parse(userJson) : null;
+      const token = getAuthToken();
       
       // Clear both storage locations
       sessionStorage.removeItem("authToken");
@@ -39,16 +40,16 @@ export const getAuthToken = () => {
       localStorage.removeItem("authToken");
       localStorage.removeItem("user");
       
-      // Only call the backend if we had a user
-      if (user && user.email) {
+      // Only call the backend if we had a session
+      if (user && token) {
         try {
           // Call backend to invalidate session - wait for it to complete
           await fetch("http://localhost:8080/api/users/logout", {
             method: "POST",
             headers: {
               "Content-Type": "application/json",
+              "Authorization": `Bearer ${token}`,
             },
-            body: JSON.stringify({ email: user.email }),
           });
         } catch (e) {
           // Ignore backend errors on logout - we've already cleared local state